@@ -5,21 +5,38 @@ import java.io.*;
 import java.net.InetSocketAddress;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * REST API Server for the LonghornNetwork React UI.
+ * Handlers read one immutable ServerState per request, so a load that runs while requests
+ * are in flight never shows them half-built data; every response carries the version it used
+ * in the X-Snapshot-Version header.
  */
 public class ApiServer {
     private static List<List<UniversityStudent>> testCases = new ArrayList<>();
-    private static int currentTestCase = 0;
-    private static List<UniversityStudent> students = new ArrayList<>();
-    private static StudentGraph graph = null;
+    private static final AtomicReference<ServerState> state =
+            new AtomicReference<>(new ServerState(0, -1, new ArrayList<>(), new StudentGraph(new ArrayList<>())));
+
+    // Limits for /api/referral?k=, so one request cannot monopolise a worker thread.
+    private static final int MAX_REFERRAL_PATHS = 10;
+    private static final long REFERRAL_DEADLINE_MS = 50;
+    private static final int DEFAULT_CHAT_PAGE = 50;
+    private static final int MAX_CHAT_PAGE = 500;
+    // Re-matches roommates after preference edits; guarded, like publish, by the lock on ApiServer.class.
+    private static RoommateMatcher matcher;
 
     public static void main(String[] args) throws IOException {
         testCases.add(generateTestCase1());
         testCases.add(generateTestCase2());
         testCases.add(generateTestCase3());
-        loadTestCase(0);
+
+        // An optional snapshot file (see StudentSnapshot) replaces the first test case at startup.
+        if (args.length > 0) {
+            loadSnapshot(args[0]);
+        } else {
+            loadTestCase(0);
+        }
 
         // HTTP server on port 8080
         HttpServer server = HttpServer.create(new InetSocketAddress(8080), 0);
@@ -31,7 +48,10 @@ public class ApiServer {
         server.createContext("/api/graph", new GraphHandler());
         server.createContext("/api/roommates", new RoommatesHandler());
         server.createContext("/api/referral", new ReferralHandler());
+        server.createContext("/api/referral/batch", new ReferralBatchHandler());
+        server.createContext("/api/companies", new CompaniesHandler());
         server.createContext("/api/student", new StudentDetailHandler());
+        server.createContext("/api/preferences", new PreferencesHandler());
         
         server.setExecutor(Executors.newFixedThreadPool(10));
         server.start();
@@ -44,41 +64,163 @@ public class ApiServer {
         System.out.println("  GET  /api/graph           - Get graph data for visualization");
         System.out.println("  POST /api/roommates       - Run GaleShapley and get assignments");
         System.out.println("  GET  /api/referral?start=Name&company=X - Find referral path");
+        System.out.println("  GET  /api/referral?start=Name&company=X&k=3 - Also list up to k alternative paths");
+        System.out.println("  POST /api/referral/batch  - Body: one start=Name&company=X per line; streams NDJSON");
+        System.out.println("  GET  /api/companies       - List internship companies and holder counts");
         System.out.println("  GET  /api/student?name=X  - Get student details (friends, chat)");
+        System.out.println("  GET  /api/student?name=X&chatOffset=0&chatLimit=50 - Page through chat history");
+        System.out.println("  POST /api/preferences?name=X&prefs=A,B - Replace roommate preferences and re-match");
     }
 
-    // loading test case, rebuild grpah
-    private static void loadTestCase(int index) {
-        if (index < 0 || index >= testCases.size()) return;
-        currentTestCase = index;
-        students = new ArrayList<>();
+    /**
+     * One published version of the served data. Nothing reachable from it is modified after
+     * publication: the next version is built off to the side and swapped in whole.
+     */
+    static final class ServerState {
+        final long version;
+        final int testCase;
+        final List<UniversityStudent> students;
+        final StudentGraph graph;
+
+        ServerState(long version, int testCase, List<UniversityStudent> students, StudentGraph graph) {
+            this.version = version;
+            this.testCase = testCase;
+            this.students = Collections.unmodifiableList(students);
+            this.graph = graph;
+        }
+    }
+
+    // Publishes the next version. Writers are serialized by the callers' lock on ApiServer.class.
+    private static ServerState publish(int testCase, List<UniversityStudent> students, StudentGraph graph) {
+        ServerState next = new ServerState(state.get().version + 1, testCase, students, graph);
+        state.set(next);
+        return next;
+    }
+
+    // loading test case, build graph once and patch in the roommate edges
+    private static synchronized ServerState loadTestCase(int index) {
+        if (index < 0 || index >= testCases.size()) return state.get();
+        List<UniversityStudent> students = new ArrayList<>();
+        // A fresh dictionary scope per load, so reloading does not grow the dictionaries.
+        StringDictionary.Scope scope = new StringDictionary.Scope();
         for (UniversityStudent s : testCases.get(index)) {
-            students.add(new UniversityStudent( s.getName(), s.getAge(), s.getGender(), s.getYear(), s.getMajor(), s.getGpa(), s.getRoommatePreferences(), s.getPreviousInternships()));
+            students.add(new UniversityStudent( s.getName(), s.getAge(), s.getGender(), s.getYear(), s.getMajor(), s.getGpa(), s.getRoommatePreferences(), s.getPreviousInternships(), scope));
         }
-        graph = new StudentGraph(students);
+        StudentGraph graph = new StudentGraph(students);
         
-        // assigning roommates - gale shapley
-        GaleShapley.assignRoommates(students);
+        // assigning roommates - gale shapley, kept current by the matcher as preferences change
+        try {
+            matcher = new RoommateMatcher(students);
+            Map<String, UniversityStudent> byName = new HashMap<>();
+            for (UniversityStudent s : students) byName.put(s.getName(), s);
+            for (UniversityStudent s : students) {
+                s.setRoommate(byName.get(matcher.assignment().roommateOf(s.getName())));
+            }
+        } catch (IllegalArgumentException e) {
+            // Repeated names: matched once by name, but preferences cannot be edited.
+            matcher = null;
+            GaleShapley.assignRoommates(students);
+        }
         
         // friend requests and chats using threads
         try {
-            ExecutorService executor = Executors.newFixedThreadPool(4);
+            List<Runnable> actions = new ArrayList<>();
             if (students.size() >= 2) {
-                executor.submit(new FriendRequestThread(students.get(0), students.get(1)));
-                executor.submit(new ChatThread(students.get(0), students.get(1), "Hello!"));
+                actions.add(new FriendRequestThread(students.get(0), students.get(1)));
+                actions.add(new ChatThread(students.get(0), students.get(1), "Hello!"));
                 if (students.size() >= 3) {
-                    executor.submit(new FriendRequestThread(students.get(1), students.get(2)));
-                    executor.submit(new ChatThread(students.get(1), students.get(2), "Hi there!"));
+                    actions.add(new FriendRequestThread(students.get(1), students.get(2)));
+                    actions.add(new ChatThread(students.get(1), students.get(2), "Hi there!"));
                 }
             }
-            executor.shutdown();
-            executor.awaitTermination(2, TimeUnit.SECONDS);
+            SocialExecutor.shared().submitAll(actions).get(2, TimeUnit.SECONDS);
         } catch (Exception e) {
             e.printStackTrace();
         }
         
-        // rebuilding graph after assignments
-        graph = new StudentGraph(students);
+        // reconnecting only the students whose roommate changed
+        for (UniversityStudent s : students) {
+            if (s.getRoommate() != null) graph.updateStudent(s);
+        }
+        return publish(index, students, graph);
+    }
+
+    /**
+     * Loads students, roommates and the graph from a snapshot written by StudentSnapshot.write,
+     * instead of rebuilding them from a test case.
+     *
+     * @param path The snapshot file.
+     * @throws IOException If the snapshot cannot be read.
+     */
+    public static synchronized void loadSnapshot(String path) throws IOException {
+        long start = System.nanoTime();
+        StudentSnapshot snapshot = StudentSnapshot.load(java.nio.file.Paths.get(path));
+        try {
+            matcher = new RoommateMatcher(snapshot.getStudents());
+        } catch (IllegalArgumentException e) {
+            // Repeated names: roommates are served as saved, but preferences cannot be edited.
+            matcher = null;
+        }
+        ServerState loaded = publish(-1, snapshot.getStudents(), snapshot.getGraph());
+        System.out.println("Loaded " + loaded.students.size() + " students from " + path + " in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Replaces a student's roommate preferences and publishes the next version. Only the
+     * preference components the student belongs to are re-matched, and only the edited student
+     * and the students whose roommate reference changes are copied and re-scored in a copy of
+     * the graph; the published version keeps its students and graph untouched.
+     *
+     * @param name        The student to edit.
+     * @param preferences The new roommate preferences.
+     * @return The published state, or null if there is no such student or preferences cannot be edited.
+     */
+    static synchronized ServerState updatePreferences(String name, List<String> preferences) {
+        ServerState current = state.get();
+        UniversityStudent old = current.graph.getStudent(name);
+        if (old == null || matcher == null) return null;
+
+        UniversityStudent edited = old.withRoommatePreferences(preferences);
+        Set<String> touched = new HashSet<>(matcher.update(edited));
+        try {
+            return publishEdit(current, edited, touched);
+        } catch (RuntimeException e) {
+            // Keep the matcher in step with the served state; re-matching is deterministic.
+            matcher.update(old);
+            throw e;
+        }
+    }
+
+    // Copies the students whose roommate changed, re-scores them in a copy of the graph, and publishes.
+    private static ServerState publishEdit(ServerState current, UniversityStudent edited, Set<String> touched) {
+        String name = edited.getName();
+        RoommateMatcher.Assignment assignment = matcher.assignment();
+        // The edited student's roommate may be unchanged, but must point at the new version.
+        touched.add(name);
+        if (assignment.roommateOf(name) != null) touched.add(assignment.roommateOf(name));
+
+        Map<String, UniversityStudent> next = new HashMap<>();
+        for (String n : touched) {
+            UniversityStudent s = current.graph.getStudent(n);
+            next.put(n, n.equals(name) ? edited : s.withRoommatePreferences(s.getRoommatePreferences()));
+        }
+        for (UniversityStudent s : next.values()) {
+            // A changed pairing changes both students, so a new roommate is always among the copies.
+            String roommate = assignment.roommateOf(s.getName());
+            s.setRoommate(roommate == null ? null : next.getOrDefault(roommate, current.graph.getStudent(roommate)));
+        }
+
+        StudentGraph graph = current.graph.copy();
+        List<UniversityStudent> students = new ArrayList<>(current.students);
+        for (int i = 0; i < students.size(); i++) {
+            UniversityStudent replacement = next.get(students.get(i).getName());
+            if (replacement != null) students.set(i, replacement);
+        }
+        for (UniversityStudent s : next.values()) {
+            graph.updateStudent(s);
+        }
+        return publish(current.testCase, students, graph);
     }
 
     // Helper to add CORS headers
@@ -86,11 +228,13 @@ public class ApiServer {
         exchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
         exchange.getResponseHeaders().add("Access-Control-Allow-Methods", "GET, POST, OPTIONS");
         exchange.getResponseHeaders().add("Access-Control-Allow-Headers", "Content-Type");
+        exchange.getResponseHeaders().add("Access-Control-Expose-Headers", "X-Snapshot-Version");
     }
 
-    // Helper to send JSON response
-    private static void sendResponse(HttpExchange exchange, int code, String json) throws IOException {
+    // Helper to send JSON response computed from one state version
+    private static void sendResponse(HttpExchange exchange, ServerState current, int code, String json) throws IOException {
         addCorsHeaders(exchange);
+        exchange.getResponseHeaders().add("X-Snapshot-Version", String.valueOf(current.version));
         exchange.getResponseHeaders().add("Content-Type", "application/json");
         byte[] bytes = json.getBytes("UTF-8");
         exchange.sendResponseHeaders(code, bytes.length);
@@ -113,14 +257,15 @@ public class ApiServer {
                 exchange.sendResponseHeaders(204, -1);
                 return;
             }
+            ServerState current = state.get();
             StringBuilder json = new StringBuilder();
-            json.append("{\"current\":").append(currentTestCase + 1);
+            json.append("{\"current\":").append(current.testCase + 1);
             json.append(",\"testCases\":[");
             json.append("{\"id\":1,\"name\":\"Test Case 1\",\"description\":\"6 students, 2 groups\"},");
             json.append("{\"id\":2,\"name\":\"Test Case 2\",\"description\":\"3 students, DummyCompany referral\"},");
             json.append("{\"id\":3,\"name\":\"Test Case 3\",\"description\":\"3 students, one unpaired\"}");
             json.append("]}");
-            sendResponse(exchange, 200, json.toString());
+            sendResponse(exchange, current, 200, json.toString());
         }
     }
 
@@ -132,13 +277,14 @@ public class ApiServer {
                 exchange.sendResponseHeaders(204, -1);
                 return;
             }
+            ServerState current = state.get();
             String query = exchange.getRequestURI().getQuery();
             int id = 1;
             if (query != null && query.startsWith("id=")) {
                 try { id = Integer.parseInt(query.substring(3)); } catch (Exception e) {}
             }
-            loadTestCase(id - 1);
-            sendResponse(exchange, 200, "{\"success\":true,\"loaded\":" + id + "}");
+            current = loadTestCase(id - 1);
+            sendResponse(exchange, current, 200, "{\"success\":true,\"loaded\":" + id + "}");
         }
     }
 
@@ -150,15 +296,16 @@ public class ApiServer {
                 exchange.sendResponseHeaders(204, -1);
                 return;
             }
+            ServerState current = state.get();
             StringBuilder json = new StringBuilder();
             json.append("{\"students\":[");
-            for (int i = 0; i < students.size(); i++) {
-                UniversityStudent s = students.get(i);
+            for (int i = 0; i < current.students.size(); i++) {
+                UniversityStudent s = current.students.get(i);
                 if (i > 0) json.append(",");
-                json.append(studentToJson(s));
+                json.append(studentToJson(s, 0, DEFAULT_CHAT_PAGE));
             }
             json.append("]}");
-            sendResponse(exchange, 200, json.toString());
+            sendResponse(exchange, current, 200, json.toString());
         }
     }
 
@@ -170,8 +317,10 @@ public class ApiServer {
                 exchange.sendResponseHeaders(204, -1);
                 return;
             }
+            ServerState current = state.get();
             StringBuilder json = new StringBuilder();
             json.append("{\"nodes\":[");
+            StudentGraph graph = current.graph;
             List<UniversityStudent> nodes = graph.getAllNodes();
             for (int i = 0; i < nodes.size(); i++) {
                 UniversityStudent s = nodes.get(i);
@@ -204,7 +353,7 @@ public class ApiServer {
                 }
             }
             json.append("]}");
-            sendResponse(exchange, 200, json.toString());
+            sendResponse(exchange, current, 200, json.toString());
         }
     }
 
@@ -216,10 +365,11 @@ public class ApiServer {
                 exchange.sendResponseHeaders(204, -1);
                 return;
             }
+            ServerState current = state.get();
             StringBuilder json = new StringBuilder();
             json.append("{\"roommates\":[");
             boolean first = true;
-            for (UniversityStudent s : students) {
+            for (UniversityStudent s : current.students) {
                 if (!first) json.append(",");
                 first = false;
                 json.append("{\"student\":\"").append(esc(s.getName())).append("\"");
@@ -231,11 +381,57 @@ public class ApiServer {
                 json.append("}");
             }
             json.append("]}");
-            sendResponse(exchange, 200, json.toString());
+            sendResponse(exchange, current, 200, json.toString());
         }
     }
 
-    // GET /api/referral?start=Name&company=X - Find referral path
+    // POST /api/preferences?name=X&prefs=A,B,C - Replace a student's roommate preferences and re-match
+    static class PreferencesHandler implements HttpHandler {
+        public void handle(HttpExchange exchange) throws IOException {
+            if ("OPTIONS".equals(exchange.getRequestMethod())) {
+                addCorsHeaders(exchange);
+                exchange.sendResponseHeaders(204, -1);
+                return;
+            }
+            ServerState current = state.get();
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendResponse(exchange, current, 405, "{\"error\":\"Use POST\"}");
+                return;
+            }
+            String query = exchange.getRequestURI().getQuery();
+            String name = null;
+            List<String> prefs = null;
+            if (query != null) {
+                for (String param : query.split("&")) {
+                    String[] kv = param.split("=", 2);
+                    if (kv.length == 2) {
+                        if ("name".equals(kv[0])) name = java.net.URLDecoder.decode(kv[1], "UTF-8");
+                        if ("prefs".equals(kv[0])) {
+                            prefs = new ArrayList<>();
+                            for (String pref : java.net.URLDecoder.decode(kv[1], "UTF-8").split(",")) {
+                                if (!pref.trim().isEmpty()) prefs.add(pref.trim());
+                            }
+                        }
+                    }
+                }
+            }
+
+            if (name == null || prefs == null) {
+                sendResponse(exchange, current, 400, "{\"error\":\"Missing name or prefs parameter\"}");
+                return;
+            }
+            ServerState next = updatePreferences(name, prefs);
+            if (next == null) {
+                sendResponse(exchange, current, 404, "{\"error\":\"Student not found or preferences not editable\"}");
+                return;
+            }
+            UniversityStudent roommate = next.graph.getStudent(name).getRoommate();
+            sendResponse(exchange, next, 200, "{\"success\":true,\"name\":\"" + esc(name) + "\",\"roommate\":"
+                    + (roommate == null ? "null" : "\"" + esc(roommate.getName()) + "\"") + "}");
+        }
+    }
+
+    // GET /api/referral?start=Name&company=X[&k=N] - Find referral path (and top-k alternatives)
     static class ReferralHandler implements HttpHandler {
         public void handle(HttpExchange exchange) throws IOException {
             if ("OPTIONS".equals(exchange.getRequestMethod())) {
@@ -243,15 +439,20 @@ public class ApiServer {
                 exchange.sendResponseHeaders(204, -1);
                 return;
             }
+            ServerState current = state.get();
             String query = exchange.getRequestURI().getQuery();
             String startName = null;
             String company = null;
+            int k = 0;
             if (query != null) {
                 for (String param : query.split("&")) {
                     String[] kv = param.split("=", 2);
                     if (kv.length == 2) {
                         if ("start".equals(kv[0])) startName = java.net.URLDecoder.decode(kv[1], "UTF-8");
                         if ("company".equals(kv[0])) company = java.net.URLDecoder.decode(kv[1], "UTF-8");
+                        if ("k".equals(kv[0])) {
+                            try { k = Math.min(MAX_REFERRAL_PATHS, Integer.parseInt(kv[1])); } catch (NumberFormatException e) {}
+                        }
                     }
                 }
             }
@@ -260,24 +461,124 @@ public class ApiServer {
             if (startName == null || company == null) {
                 json.append("{\"error\":\"Missing start or company parameter\",\"path\":[]}");
             } else {
-                UniversityStudent start = graph.getStudent(startName);
+                UniversityStudent start = current.graph.getStudent(startName);
                 if (start == null) {
                     json.append("{\"error\":\"Student not found\",\"path\":[]}");
                 } else {
-                    ReferralPathFinder finder = new ReferralPathFinder(graph);
+                    ReferralPathFinder finder = new ReferralPathFinder(current.graph, ReferralPathFinder.Strategy.DISTANCE_FIELD);
                     List<UniversityStudent> path = finder.findReferralPath(start, company);
                     json.append("{\"start\":\"").append(esc(startName)).append("\"");
                     json.append(",\"company\":\"").append(esc(company)).append("\"");
                     json.append(",\"found\":").append(!path.isEmpty());
-                    json.append(",\"path\":[");
-                    for (int i = 0; i < path.size(); i++) {
-                        if (i > 0) json.append(",");
-                        json.append("\"").append(esc(path.get(i).getName())).append("\"");
+                    json.append(",\"path\":").append(pathToJson(path));
+                    if (k > 0) {
+                        // Alternatives are best-effort: whatever Yen's search confirms before the deadline.
+                        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(REFERRAL_DEADLINE_MS);
+                        List<List<UniversityStudent>> paths = finder.findTopKReferralPaths(start, company, k, deadline);
+                        json.append(",\"paths\":[");
+                        for (int i = 0; i < paths.size(); i++) {
+                            if (i > 0) json.append(",");
+                            json.append(pathToJson(paths.get(i)));
+                        }
+                        json.append("]");
                     }
-                    json.append("]}");
+                    json.append("}");
                 }
             }
-            sendResponse(exchange, 200, json.toString());
+            sendResponse(exchange, current, 200, json.toString());
+        }
+    }
+
+    // POST /api/referral/batch - one query per line, results streamed back as NDJSON
+    static class ReferralBatchHandler implements HttpHandler {
+        public void handle(HttpExchange exchange) throws IOException {
+            if ("OPTIONS".equals(exchange.getRequestMethod())) {
+                addCorsHeaders(exchange);
+                exchange.sendResponseHeaders(204, -1);
+                return;
+            }
+            ServerState current = state.get();
+            List<ReferralPathFinder.Query> queries = new ArrayList<>();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), "UTF-8"));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String startName = null;
+                String company = null;
+                for (String param : line.trim().split("&")) {
+                    String[] kv = param.split("=", 2);
+                    if (kv.length == 2) {
+                        if ("start".equals(kv[0])) startName = java.net.URLDecoder.decode(kv[1], "UTF-8");
+                        if ("company".equals(kv[0])) company = java.net.URLDecoder.decode(kv[1], "UTF-8");
+                    }
+                }
+                if (startName != null && company != null) {
+                    queries.add(new ReferralPathFinder.Query(queries.size(), startName, company));
+                }
+            }
+
+            addCorsHeaders(exchange);
+            exchange.getResponseHeaders().add("Content-Type", "application/x-ndjson");
+            exchange.getResponseHeaders().add("X-Snapshot-Version", String.valueOf(current.version));
+            exchange.sendResponseHeaders(200, 0);
+
+            // Results arrive from several worker threads; each line is written and flushed whole.
+            // The first failed write, usually a client that went away, stops the rest of the batch.
+            ReferralPathFinder finder = new ReferralPathFinder(current.graph);
+            try (OutputStream os = exchange.getResponseBody()) {
+                finder.findReferralPaths(queries, result -> {
+                    StringBuilder json = new StringBuilder();
+                    json.append("{\"index\":").append(result.query.index);
+                    json.append(",\"start\":\"").append(esc(result.query.startName)).append("\"");
+                    json.append(",\"company\":\"").append(esc(result.query.company)).append("\"");
+                    json.append(",\"found\":").append(!result.path.isEmpty());
+                    json.append(",\"path\":").append(pathToJson(result.path));
+                    json.append("}\n");
+                    byte[] bytes = json.toString().getBytes(java.nio.charset.StandardCharsets.UTF_8);
+                    synchronized (os) {
+                        try {
+                            os.write(bytes);
+                            os.flush();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                // The response is already committed, so there is nobody left to report the error to.
+            }
+        }
+    }
+
+    // Path as a JSON array of names
+    private static String pathToJson(List<UniversityStudent> path) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < path.size(); i++) {
+            if (i > 0) json.append(",");
+            json.append("\"").append(esc(path.get(i).getName())).append("\"");
+        }
+        return json.append("]").toString();
+    }
+
+    // GET /api/companies - companies from the graph's company index
+    static class CompaniesHandler implements HttpHandler {
+        public void handle(HttpExchange exchange) throws IOException {
+            if ("OPTIONS".equals(exchange.getRequestMethod())) {
+                addCorsHeaders(exchange);
+                exchange.sendResponseHeaders(204, -1);
+                return;
+            }
+            ServerState current = state.get();
+            CompanyIndex index = current.graph.companyIndex();
+            StringBuilder json = new StringBuilder();
+            json.append("{\"companies\":[");
+            for (int c = 0; c < index.companyCount(); c++) {
+                if (c > 0) json.append(",");
+                json.append("{\"name\":\"").append(esc(index.companyName(c))).append("\"");
+                json.append(",\"holders\":").append(index.holderCount(c));
+                json.append("}");
+            }
+            json.append("]}");
+            sendResponse(exchange, current, 200, json.toString());
         }
     }
 
@@ -289,29 +590,41 @@ public class ApiServer {
                 exchange.sendResponseHeaders(204, -1);
                 return;
             }
+            ServerState current = state.get();
             String query = exchange.getRequestURI().getQuery();
             String name = null;
-            if (query != null && query.startsWith("name=")) {
-                name = java.net.URLDecoder.decode(query.substring(5), "UTF-8");
+            int chatOffset = 0;
+            int chatLimit = DEFAULT_CHAT_PAGE;
+            if (query != null) {
+                for (String param : query.split("&")) {
+                    String[] kv = param.split("=", 2);
+                    if (kv.length == 2) {
+                        if ("name".equals(kv[0])) name = java.net.URLDecoder.decode(kv[1], "UTF-8");
+                        try {
+                            if ("chatOffset".equals(kv[0])) chatOffset = Math.max(0, Integer.parseInt(kv[1]));
+                            if ("chatLimit".equals(kv[0])) chatLimit = Math.max(0, Math.min(MAX_CHAT_PAGE, Integer.parseInt(kv[1])));
+                        } catch (NumberFormatException e) {}
+                    }
+                }
             }
             
             if (name == null) {
-                sendResponse(exchange, 400, "{\"error\":\"Missing name parameter\"}");
+                sendResponse(exchange, current, 400, "{\"error\":\"Missing name parameter\"}");
                 return;
             }
             
-            UniversityStudent s = graph.getStudent(name);
+            UniversityStudent s = current.graph.getStudent(name);
             if (s == null) {
-                sendResponse(exchange, 404, "{\"error\":\"Student not found\"}");
+                sendResponse(exchange, current, 404, "{\"error\":\"Student not found\"}");
                 return;
             }
             
-            sendResponse(exchange, 200, studentToJson(s));
+            sendResponse(exchange, current, 200, studentToJson(s, chatOffset, chatLimit));
         }
     }
 
-    // Convert student to JSON
-    private static String studentToJson(UniversityStudent s) {
+    // Convert student to JSON, including one page of its chat history and the total to page through
+    private static String studentToJson(UniversityStudent s, int chatOffset, int chatLimit) {
         StringBuilder json = new StringBuilder();
         json.append("{\"name\":\"").append(esc(s.getName())).append("\"");
         json.append(",\"age\":").append(s.getAge());
@@ -354,8 +667,10 @@ public class ApiServer {
             json.append("]");
         }
         
+        json.append(",\"chatTotal\":").append(s.getChatCount());
+        json.append(",\"chatOffset\":").append(chatOffset);
         json.append(",\"chatHistory\":[");
-        List<String> chats = s.getChatHistory();
+        List<String> chats = s.getChatHistory(chatOffset, chatLimit);
         if (chats.isEmpty()) {
             json.append("]");
         } else {
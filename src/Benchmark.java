@@ -0,0 +1,1670 @@
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Standalone benchmark driver for the Longhorn Network building blocks.
+ * Runs against synthetic cohorts so the numbers can be reproduced on any machine.
+ *
+ * Usage: java Benchmark &lt;suite&gt; [cohort sizes...]
+ * <ul>
+ * <li>graph - compares the pairwise and indexed StudentGraph builds</li>
+ * <li>parallel - measures how the parallel StudentGraph build scales with pool size</li>
+ * <li>memory - compares heap per edge of StudentGraph and CompactStudentGraph</li>
+ * <li>bidirectional - compares nodes settled per query by the one-sided and bidirectional searches</li>
+ * <li>parser - measures sequential and memory-mapped parallel DataParser throughput in MB/s on a generated roster file</li>
+ * <li>scoring - checks calculateConnectionStrength and the compiled default ConnectionScorer against the original list scan on random pairs, also across dictionary scopes, checks graphs built over mixed scopes, and compares their speed</li>
+ * <li>incremental - applies random add, update, roommate and remove operations to a StudentGraph and checks it against fresh builds</li>
+ * <li>versions - derives graph versions with copy() while reader threads check that published versions never change</li>
+ * <li>social - stress-tests friend requests and chats from 64 threads, checking reciprocity and message order</li>
+ * <li>roommates - checks the dense-id GaleShapley against the name-based matcher and the roommate_sample fixture, and compares their speed</li>
+ * <li>partitioned - checks that GaleShapley per preference component matches the sequential run and reports speedup by pool size</li>
+ * <li>rematch - applies random preference edits, additions and removals through RoommateMatcher and checks each result against a full GaleShapley run</li>
+ * <li>pods - checks growPods against the pod_sample fixture, compares grown, propagated and refined pods by time and kept weight, and incremental repod with a full propagation</li>
+ * <li>stable - checks Irving's StableRoommates against brute-force enumeration on 20k small random instances, then runs it and GaleShapley on cohorts with local preference lists, reporting time, allocation, unpaired students and blocking pairs</li>
+ * <li>sessions - runs concurrent simulated user sessions on a fixed pool of 4 and on the shared SocialExecutor, and times small batches with and without per-batch pools</li>
+ * <li>chat - compares heap growth of per-student chat lists with a retention-capped ChatLog, times paged reads, and checks ordering under concurrent appends</li>
+ * <li>snapshot - compares text parsing plus graph build with loading a binary snapshot, and checks the round trip</li>
+ * <li>referral - compares referral query latency of the original Dijkstra, the search and distance fields</li>
+ * </ul>
+ */
+public class Benchmark {
+    private static final String[] MAJORS = {
+            "Computer Science", "ECE", "Mathematics", "Physics", "Chemistry", "Biology",
+            "Economics", "History", "Finance", "Accounting", "Marketing", "Psychology",
+            "Mechanical Engineering", "Civil Engineering", "Aerospace Engineering", "Architecture",
+            "Nursing", "Pharmacy", "Linguistics", "Philosophy", "Government", "Journalism",
+            "Geology", "Statistics", "Astronomy", "Music", "Theatre", "Art History",
+            "Neuroscience", "Nutrition", "Kinesiology", "Anthropology", "Sociology", "Geography",
+            "Chemical Engineering", "Biomedical Engineering", "Petroleum Engineering", "Radio-Television-Film",
+            "Advertising", "Management Information Systems"
+    };
+
+    public static void main(String[] args) throws IOException {
+        String suite = args.length > 0 ? args[0] : "graph";
+        int[] sizes = parseSizes(args, new int[]{1_000, 10_000, 100_000});
+
+        switch (suite) {
+            case "graph":
+                benchmarkGraphBuild(sizes);
+                break;
+            case "parallel":
+                benchmarkParallelBuild(parseSizes(args, new int[]{10_000, 40_000}));
+                break;
+            case "memory":
+                benchmarkGraphMemory(parseSizes(args, new int[]{10_000, 40_000}));
+                break;
+            case "bidirectional":
+                benchmarkBidirectional(parseSizes(args, new int[]{10_000, 20_000}));
+                break;
+            case "parser":
+                benchmarkParser(parseSizes(args, new int[]{100_000, 1_000_000}));
+                break;
+            case "scoring":
+                benchmarkScoring(parseSizes(args, new int[]{1_000_000}));
+                break;
+            case "incremental":
+                benchmarkIncremental(parseSizes(args, new int[]{2_000, 10_000}));
+                break;
+            case "versions":
+                benchmarkVersions(parseSizes(args, new int[]{2_000, 10_000}));
+                break;
+            case "social":
+                benchmarkSocial(parseSizes(args, new int[]{1_000_000}));
+                break;
+            case "roommates":
+                benchmarkRoommates(parseSizes(args, new int[]{5_000, 20_000}));
+                break;
+            case "partitioned":
+                benchmarkPartitionedRoommates(parseSizes(args, new int[]{50_000, 200_000}));
+                break;
+            case "rematch":
+                benchmarkRematch(parseSizes(args, new int[]{20_000, 100_000}));
+                break;
+            case "pods":
+                benchmarkPods(parseSizes(args, new int[]{20_000, 100_000}));
+                break;
+            case "stable":
+                benchmarkStableRoommates(parseSizes(args, new int[]{1_000, 10_000, 50_000}));
+                break;
+            case "sessions":
+                benchmarkSessions(parseSizes(args, new int[]{10_000}));
+                break;
+            case "chat":
+                benchmarkChatLog(parseSizes(args, new int[]{1_000_000, 2_000_000, 4_000_000}));
+                break;
+            case "snapshot":
+                benchmarkSnapshot(parseSizes(args, new int[]{5_000, 20_000}));
+                break;
+            case "referral":
+                benchmarkReferral(parseSizes(args, new int[]{10_000, 50_000}));
+                break;
+            default:
+                System.out.println("Unknown suite: " + suite);
+        }
+    }
+
+    private static int[] parseSizes(String[] args, int[] defaults) {
+        if (args.length < 2) return defaults;
+        int[] sizes = new int[args.length - 1];
+        for (int i = 1; i < args.length; i++) {
+            sizes[i - 1] = Integer.parseInt(args[i]);
+        }
+        return sizes;
+    }
+
+    /**
+     * Generates a reproducible synthetic cohort. Ages, majors and internships are drawn
+     * uniformly so every bucket in the candidate index is populated.
+     *
+     * @param n    The number of students to generate.
+     * @param seed The random seed.
+     * @return A list of n UniversityStudent objects with unique names.
+     */
+    public static List<UniversityStudent> syntheticCohort(int n, long seed) {
+        Random random = new Random(seed);
+        List<UniversityStudent> students = new ArrayList<>(n);
+        int companies = Math.max(50, n / 50);
+
+        for (int i = 0; i < n; i++) {
+            List<String> prefs = new ArrayList<>();
+            int prefCount = random.nextInt(4);
+            for (int p = 0; p < prefCount; p++) {
+                prefs.add("Student" + random.nextInt(n));
+            }
+
+            List<String> internships = new ArrayList<>();
+            int internshipCount = random.nextInt(4);
+            for (int c = 0; c < internshipCount; c++) {
+                internships.add("Company" + random.nextInt(companies));
+            }
+
+            students.add(new UniversityStudent("Student" + i, 17 + random.nextInt(50),
+                    random.nextBoolean() ? "Female" : "Male", 1 + random.nextInt(4),
+                    MAJORS[random.nextInt(MAJORS.length)], 2.0 + random.nextInt(21) / 10.0,
+                    prefs, internships));
+        }
+        return students;
+    }
+
+    /**
+     * Writes students to a file in the roster format read by DataParser.
+     *
+     * @param students The students to write.
+     * @param file     The destination file.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void writeRoster(List<UniversityStudent> students, Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (UniversityStudent s : students) {
+                writer.write("Student:\n");
+                writer.write("Name: " + s.getName() + "\n");
+                writer.write("Age: " + s.getAge() + "\n");
+                writer.write("Gender: " + s.getGender() + "\n");
+                writer.write("Year: " + s.getYear() + "\n");
+                writer.write("Major: " + s.getMajor() + "\n");
+                writer.write("GPA: " + s.getGpa() + "\n");
+                writer.write("RoommatePreferences: " + (s.getRoommatePreferences().isEmpty() ? "None" : String.join(", ", s.getRoommatePreferences())) + "\n");
+                writer.write("PreviousInternships: " + (s.getPreviousInternships().isEmpty() ? "None" : String.join(", ", s.getPreviousInternships())) + "\n");
+                writer.write("\n");
+            }
+        }
+    }
+
+    // Times both build modes at each cohort size and checks that they agree.
+    private static void benchmarkGraphBuild(int[] sizes) {
+        System.out.println("StudentGraph build: pairwise vs indexed");
+        for (int n : sizes) {
+            List<UniversityStudent> students = syntheticCohort(n, 42);
+
+            long start = System.nanoTime();
+            StudentGraph indexed = new StudentGraph(students, StudentGraph.BuildMode.INDEXED);
+            long indexedMs = (System.nanoTime() - start) / 1_000_000;
+
+            start = System.nanoTime();
+            StudentGraph pairwise = new StudentGraph(students, StudentGraph.BuildMode.PAIRWISE);
+            long pairwiseMs = (System.nanoTime() - start) / 1_000_000;
+
+            boolean same = indexed.hasSameAdjacency(pairwise);
+            System.out.println("  n=" + n + "  pairwise=" + pairwiseMs + " ms  indexed=" + indexedMs
+                    + " ms  identical=" + same);
+            if (!same) throw new IllegalStateException("Indexed build differs from the pairwise build at n=" + n);
+        }
+    }
+
+    // Times the parallel build with pools of 1, 2, 4, ... up to the available cores.
+    private static void benchmarkParallelBuild(int[] sizes) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println("StudentGraph parallel build scaling (" + cores + " cores)");
+        for (int n : sizes) {
+            List<UniversityStudent> students = syntheticCohort(n, 42);
+
+            long start = System.nanoTime();
+            StudentGraph sequential = new StudentGraph(students, StudentGraph.BuildMode.INDEXED);
+            long sequentialMs = (System.nanoTime() - start) / 1_000_000;
+            System.out.println("  n=" + n + "  indexed (1 thread)=" + sequentialMs + " ms");
+
+            for (int threads = 1; threads <= cores; threads *= 2) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                start = System.nanoTime();
+                StudentGraph parallel = new StudentGraph(students, pool);
+                long parallelMs = (System.nanoTime() - start) / 1_000_000;
+                pool.shutdown();
+
+                boolean same = parallel.hasSameAdjacency(sequential);
+                System.out.println("    threads=" + threads + "  " + parallelMs + " ms  speedup="
+                        + String.format("%.2f", sequentialMs / (double) Math.max(1, parallelMs))
+                        + "  identical=" + same);
+                if (!same) throw new IllegalStateException("Parallel build on " + threads + " threads differs at n=" + n);
+            }
+        }
+    }
+
+    // Measures retained heap of both graph representations and checks that they agree.
+    private static void benchmarkGraphMemory(int[] sizes) {
+        System.out.println("Graph heap usage: StudentGraph vs CompactStudentGraph");
+        for (int n : sizes) {
+            List<UniversityStudent> students = syntheticCohort(n, 42);
+
+            long before = usedHeap();
+            StudentGraph graph = new StudentGraph(students, StudentGraph.BuildMode.PARALLEL);
+            long graphBytes = usedHeap() - before;
+
+            before = usedHeap();
+            CompactStudentGraph compact = new CompactStudentGraph(students);
+            long compactBytes = usedHeap() - before;
+
+            long edges = Math.max(1, compact.edgeCount());
+            boolean same = sameEdges(graph, compact);
+            System.out.println("  n=" + n + "  edges=" + compact.edgeCount()
+                    + "  StudentGraph=" + (graphBytes >> 20) + " MB (" + graphBytes / edges + " B/edge)"
+                    + "  compact=" + (compactBytes >> 20) + " MB (" + compactBytes / edges + " B/edge)"
+                    + "  identical=" + same);
+            if (!same) throw new IllegalStateException("Compact graph differs from the StudentGraph at n=" + n);
+        }
+    }
+
+    private static boolean sameEdges(StudentGraph graph, CompactStudentGraph compact) {
+        if (graph.getAllNodes().size() != compact.size()) return false;
+        for (UniversityStudent s : graph.getAllNodes()) {
+            List<StudentGraph.Edge> expected = graph.getNeighbors(s);
+            int id = compact.idOf(s);
+            if (id < 0 || compact.degree(id) != expected.size()) return false;
+            for (int k = 0; k < expected.size(); k++) {
+                int e = compact.edgeStart(id) + k;
+                if (!compact.studentAt(compact.neighborAt(e)).equals(expected.get(k).neighbor)) return false;
+                if (compact.weightAt(e) != expected.get(k).weight) return false;
+            }
+        }
+        return true;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // Runs the same random queries through the original and current finders and reports latency percentiles.
+    // Fails if a current finder returns a costlier path than the original, or if the finders disagree.
+    private static void benchmarkReferral(int[] sizes) {
+        System.out.println("Referral queries: original map-based Dijkstra vs ReferralPathFinder strategies");
+        for (int n : sizes) {
+            List<UniversityStudent> students = syntheticCohort(n, 42);
+            StudentGraph graph = new StudentGraph(students, StudentGraph.BuildMode.PARALLEL);
+            ReferralPathFinder finder = new ReferralPathFinder(graph);
+            ReferralPathFinder fields = new ReferralPathFinder(graph, ReferralPathFinder.Strategy.DISTANCE_FIELD);
+            graph.compact();
+
+            // Most traffic goes to a few hot companies, so queries are drawn from a small set.
+            Random random = new Random(7);
+            int queries = 500;
+            UniversityStudent[] starts = new UniversityStudent[queries];
+            String[] companies = new String[queries];
+            for (int q = 0; q < queries; q++) {
+                starts[q] = students.get(random.nextInt(n));
+                companies[q] = "Company" + random.nextInt(20);
+            }
+
+            long[] legacyNanos = new long[queries];
+            long[] currentNanos = new long[queries];
+            long[] fieldNanos = new long[queries];
+            int mismatches = 0;
+            int originalWorse = 0;
+            for (int q = 0; q < queries; q++) {
+                long start = System.nanoTime();
+                List<UniversityStudent> expected = legacyReferralPath(graph, starts[q], companies[q]);
+                legacyNanos[q] = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                List<UniversityStudent> actual = finder.findReferralPath(starts[q], companies[q]);
+                currentNanos[q] = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                List<UniversityStudent> fromField = fields.findReferralPath(starts[q], companies[q]);
+                fieldNanos[q] = System.nanoTime() - start;
+
+                int cost = pathCost(graph, actual);
+                int legacyCost = pathCost(graph, expected);
+                if (costlier(cost, legacyCost) || cost != pathCost(graph, fromField)) mismatches++;
+                else if (cost != legacyCost) originalWorse++;
+            }
+
+            System.out.println("  n=" + n + "  original " + percentiles(legacyNanos)
+                    + "  search " + percentiles(currentNanos)
+                    + "  distance field " + percentiles(fieldNanos)
+                    + "  original costlier=" + originalWorse + "  cost mismatches=" + mismatches);
+            if (mismatches > 0) throw new IllegalStateException(mismatches + " referral queries found a costlier path at n=" + n);
+        }
+    }
+
+    // Runs random queries through SEARCH and BIDIRECTIONAL and compares work done and path cost.
+    private static void benchmarkBidirectional(int[] sizes) {
+        System.out.println("Referral search: one-sided vs bidirectional");
+        for (int n : sizes) {
+            List<UniversityStudent> students = syntheticCohort(n, 42);
+            StudentGraph graph = new StudentGraph(students, StudentGraph.BuildMode.PARALLEL);
+            ReferralPathFinder oneSided = new ReferralPathFinder(graph, ReferralPathFinder.Strategy.SEARCH);
+            ReferralPathFinder bidirectional = new ReferralPathFinder(graph, ReferralPathFinder.Strategy.BIDIRECTIONAL);
+            graph.compact();
+
+            Random random = new Random(11);
+            int queries = 500;
+            long oneSidedSettled = 0;
+            long bidirectionalSettled = 0;
+            long[] oneSidedNanos = new long[queries];
+            long[] bidirectionalNanos = new long[queries];
+            int mismatches = 0;
+
+            for (int q = 0; q < queries; q++) {
+                UniversityStudent start = students.get(random.nextInt(n));
+                String company = "Company" + random.nextInt(Math.max(50, n / 50));
+
+                long begin = System.nanoTime();
+                List<UniversityStudent> expected = oneSided.findReferralPath(start, company);
+                oneSidedNanos[q] = System.nanoTime() - begin;
+                oneSidedSettled += ReferralPathFinder.settledInLastQuery();
+
+                begin = System.nanoTime();
+                List<UniversityStudent> actual = bidirectional.findReferralPath(start, company);
+                bidirectionalNanos[q] = System.nanoTime() - begin;
+                bidirectionalSettled += ReferralPathFinder.settledInLastQuery();
+
+                if (pathCost(graph, expected) != pathCost(graph, actual)) mismatches++;
+            }
+
+            System.out.println("  n=" + n + "  one-sided settled/query=" + oneSidedSettled / queries
+                    + " " + percentiles(oneSidedNanos)
+                    + "  bidirectional settled/query=" + bidirectionalSettled / queries
+                    + " " + percentiles(bidirectionalNanos) + "  cost mismatches=" + mismatches);
+            if (mismatches > 0) throw new IllegalStateException(mismatches + " bidirectional queries differ in cost at n=" + n);
+        }
+    }
+
+    // Parses generated rosters sequentially and in parallel and reports throughput; the first
+    // pass warms up the JIT. Both parsers must return the same students in the same order.
+    private static void benchmarkParser(int[] sizes) throws IOException {
+        System.out.println("DataParser throughput (" + ForkJoinPool.commonPool().getParallelism() + " worker threads)");
+        for (int n : sizes) {
+            Path file = Files.createTempFile("roster", ".txt");
+            try {
+                writeRoster(syntheticCohort(n, 42), file);
+                double megabytes = Files.size(file) / (1024.0 * 1024.0);
+
+                for (int pass = 0; pass < 3; pass++) {
+                    long start = System.nanoTime();
+                    List<UniversityStudent> sequential = DataParser.parseStudents(file.toString());
+                    double sequentialSeconds = (System.nanoTime() - start) / 1e9;
+
+                    start = System.nanoTime();
+                    List<UniversityStudent> parallel = DataParser.parseStudentsParallel(file.toString());
+                    double parallelSeconds = (System.nanoTime() - start) / 1e9;
+
+                    boolean same = sequential.size() == parallel.size();
+                    for (int i = 0; same && i < sequential.size(); i++) {
+                        same = sequential.get(i).toString().equals(parallel.get(i).toString());
+                    }
+
+                    System.out.println(String.format("  n=%d  %.1f MB  pass %d: sequential %.0f ms %.1f MB/s  parallel %.0f ms %.1f MB/s  students=%d  identical=%b",
+                            n, megabytes, pass + 1, sequentialSeconds * 1000, megabytes / sequentialSeconds,
+                            parallelSeconds * 1000, megabytes / parallelSeconds, parallel.size(), same));
+                    if (!same) throw new IllegalStateException("Parallel parse differs from the sequential parse at n=" + n);
+                }
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    // Times the compiled scorer against the original string scan and the encoded method it replaced,
+    // and fails on any disagreement. Internship lists mix a few popular companies with a long tail of
+    // rare ones, and repeat companies on purpose.
+    private static void benchmarkScoring(int[] sizes) {
+        System.out.println("Connection strength scoring");
+        Random random = new Random(7);
+        String[] popular = new String[40];
+        for (int c = 0; c < popular.length; c++) popular[c] = "Company" + c;
+
+        for (int pairs : sizes) {
+            int n = 20_000;
+            List<UniversityStudent> students = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                List<String> internships = new ArrayList<>();
+                int count = random.nextInt(6);
+                for (int c = 0; c < count; c++) {
+                    if (c > 0 && random.nextInt(8) == 0) {
+                        internships.add(internships.get(random.nextInt(c)));
+                    } else if (random.nextBoolean()) {
+                        internships.add(popular[random.nextInt(popular.length)]);
+                    } else {
+                        internships.add("Company" + (40 + random.nextInt(5_000)));
+                    }
+                }
+                students.add(new UniversityStudent("Scored" + i, 18 + random.nextInt(8), "Female", 1,
+                        random.nextInt(10) == 0 ? null : MAJORS[random.nextInt(10)], 3.0,
+                        new ArrayList<>(), internships));
+            }
+            for (int i = 0; i + 1 < n; i += 10) {
+                students.get(i).setRoommate(students.get(i + 1));
+            }
+            // The same students encoded in another dictionary scope, scored against the originals by string.
+            StringDictionary.Scope otherScope = new StringDictionary.Scope();
+            List<UniversityStudent> copies = new ArrayList<>(n);
+            for (UniversityStudent s : students) {
+                copies.add(new UniversityStudent(s.getName(), s.getAge(), s.getGender(), s.getYear(), s.getMajor(), s.getGpa(),
+                        s.getRoommatePreferences(), s.getPreviousInternships(), otherScope));
+            }
+
+            checkMixedScopes(students, copies, random);
+
+            int[] left = new int[pairs];
+            int[] right = new int[pairs];
+            for (int p = 0; p < pairs; p++) {
+                left[p] = random.nextInt(n);
+                right[p] = random.nextBoolean() ? random.nextInt(n) : Math.min(n - 1, left[p] + 1);
+            }
+
+            ConnectionScorer scorer = ConnectionScorer.DEFAULT;
+            long mismatches = 0;
+            for (int p = 0; p < pairs; p++) {
+                UniversityStudent a = students.get(left[p]);
+                UniversityStudent b = students.get(right[p]);
+                int expected = legacyConnectionStrength(a, b);
+                if (encodedConnectionStrength(a, b) != expected || scorer.score(a, b) != expected) mismatches++;
+                else if (a.calculateConnectionStrength(b) != expected) mismatches++;
+                else if (scorer.score(a, copies.get(right[p])) != expected) mismatches++;
+            }
+            if (mismatches > 0) {
+                throw new IllegalStateException(mismatches + " of " + pairs + " pairs scored differently");
+            }
+
+            for (int pass = 0; pass < 3; pass++) {
+                long checksum = 0;
+                long start = System.nanoTime();
+                for (int p = 0; p < pairs; p++) {
+                    checksum += legacyConnectionStrength(students.get(left[p]), students.get(right[p]));
+                }
+                long legacyNanos = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                for (int p = 0; p < pairs; p++) {
+                    checksum -= encodedConnectionStrength(students.get(left[p]), students.get(right[p]));
+                }
+                long encodedNanos = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                for (int p = 0; p < pairs; p++) {
+                    checksum += scorer.score(students.get(left[p]), students.get(right[p]));
+                }
+                long compiledNanos = System.nanoTime() - start;
+
+                System.out.println(String.format("  pairs=%d  pass %d: string scan %.1f ns/pair  encoded method %.1f ns/pair  compiled scorer %.1f ns/pair  checksum=%d",
+                        pairs, pass + 1, legacyNanos / (double) pairs, encodedNanos / (double) pairs,
+                        compiledNanos / (double) pairs, checksum));
+            }
+        }
+    }
+
+    // Builds graphs over students of three scopes, the last with strings the others never saw, and fails
+    // unless the indexed and incremental builds match the pairwise one without growing the first scope.
+    private static void checkMixedScopes(List<UniversityStudent> students, List<UniversityStudent> copies, Random random) {
+        StringDictionary.Scope home = students.get(0).getScope();
+        int homeStrings = home.names.size() + home.majors.size() + home.companies.size();
+        StringDictionary.Scope fresh = new StringDictionary.Scope();
+        List<UniversityStudent> mixed = new ArrayList<>(students.subList(0, 1_000));
+        mixed.addAll(copies.subList(1_000, 2_000));
+        List<UniversityStudent> added = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            List<String> internships = Arrays.asList("Fresh" + random.nextInt(20), "Company" + random.nextInt(40));
+            added.add(new UniversityStudent("Fresh" + i, 18 + random.nextInt(8), "Female", 1,
+                    random.nextBoolean() ? "Fresh major" : MAJORS[random.nextInt(10)], 3.0, new ArrayList<>(), internships, fresh));
+        }
+
+        StudentGraph incremental = new StudentGraph(mixed);
+        for (UniversityStudent s : added) incremental.addStudent(s);
+        mixed.addAll(added);
+        StudentGraph pairwise = new StudentGraph(mixed, StudentGraph.BuildMode.PAIRWISE);
+        boolean same = new StudentGraph(mixed).hasSameAdjacency(pairwise) && incremental.hasSameAdjacency(pairwise);
+        int grown = home.names.size() + home.majors.size() + home.companies.size() - homeStrings;
+        System.out.println("  mixed scopes: identical=" + same + "  strings added to the first scope=" + grown);
+        if (!same || grown != 0) throw new IllegalStateException("Graphs over mixed scopes differ or grew another cohort's scope");
+    }
+
+    // calculateConnectionStrength as originally written, on strings and List.contains.
+    private static int legacyConnectionStrength(UniversityStudent a, UniversityStudent b) {
+        int strength = 0;
+        if (a.getRoommate() != null && a.getRoommate().equals(b)) strength += 4;
+        for (String internship : a.getPreviousInternships()) {
+            if (b.getPreviousInternships().contains(internship)) {
+                strength += 3;
+            }
+        }
+        if (a.getMajor() != null && a.getMajor().equals(b.getMajor())) strength += 2;
+        if (a.getAge() == b.getAge()) strength += 1;
+        return strength;
+    }
+
+    // calculateConnectionStrength as it stood before it delegated to ConnectionScorer: fixed weights
+    // over the encoded names, majors and internship codes.
+    private static int encodedConnectionStrength(UniversityStudent a, UniversityStudent b) {
+        int strength = 0;
+        if (a.getRoommate() != null && a.getRoommate().hasSameName(b)) strength += 4;
+        strength += 3 * a.sharedInternships(b);
+        if (a.hasSameMajor(b)) strength += 2;
+        if (a.getAge() == b.getAge()) strength += 1;
+        return strength;
+    }
+
+    // Applies batches of random edits to a graph and to a plain list, and fails unless the graph equals
+    // a fresh build over the list after every batch; also reports the time per edit against one rebuild.
+    private static void benchmarkIncremental(int[] sizes) {
+        System.out.println("Incremental StudentGraph maintenance");
+        for (int n : sizes) {
+            Random random = new Random(11);
+            List<UniversityStudent> students = syntheticCohort(n, 42);
+            List<UniversityStudent> pool = syntheticCohort(1_000, 43);
+            StudentGraph graph = new StudentGraph(students);
+            students = new ArrayList<>(students);
+
+            int batches = 5;
+            int editsPerBatch = 200;
+            long editNanos = 0;
+            long rebuildNanos = 0;
+            int added = 0;
+            boolean same = true;
+
+            for (int batch = 0; batch < batches && same; batch++) {
+                for (int e = 0; e < editsPerBatch; e++) {
+                    int op = random.nextInt(5);
+                    int pos = random.nextInt(students.size());
+                    UniversityStudent template = pool.get(random.nextInt(pool.size()));
+                    long start = System.nanoTime();
+
+                    if (op == 0) {
+                        UniversityStudent s = copyAs("Added" + added++, template);
+                        students.add(s);
+                        graph.addStudent(s);
+                    } else if (op == 1) {
+                        UniversityStudent s = copyAs(students.get(pos).getName(), template);
+                        students.set(pos, s);
+                        graph.updateStudent(s);
+                    } else if (op == 2) {
+                        UniversityStudent a = students.get(pos);
+                        UniversityStudent b = students.get(random.nextInt(students.size()));
+                        a.setRoommate(b);
+                        b.setRoommate(a);
+                        graph.updateStudent(a);
+                        graph.updateStudent(b);
+                    } else if (op == 3) {
+                        // A hand-added edge must sit in sequence order, so removing one end undoes it exactly.
+                        UniversityStudent a = students.get(pos);
+                        UniversityStudent b = students.get((pos + 1 + random.nextInt(students.size() - 1)) % students.size());
+                        graph.addEdge(a, b, 1);
+                        graph.removeStudent(students.remove(pos));
+                    } else {
+                        graph.removeStudent(students.remove(pos));
+                    }
+                    editNanos += System.nanoTime() - start;
+                }
+
+                long start = System.nanoTime();
+                StudentGraph rebuilt = new StudentGraph(students);
+                rebuildNanos += System.nanoTime() - start;
+                same = graph.hasSameAdjacency(rebuilt);
+            }
+
+            System.out.println(String.format("  n=%d  %.1f us/edit  full rebuild %.0f ms  identical=%b",
+                    n, editNanos / 1e3 / (batches * editsPerBatch), rebuildNanos / 1e6 / batches, same));
+            if (!same) throw new IllegalStateException("Incremental graph differs from a full rebuild at n=" + n);
+        }
+    }
+
+    // Publishes a chain of graph versions, each a copy() of the last with a few students replaced,
+    // added or removed, while reader threads fingerprint whatever version is current. A reader that
+    // sees a version's fingerprint change caught a writer modifying published state.
+    private static void benchmarkVersions(int[] sizes) {
+        System.out.println("Copy-on-write graph versions");
+        for (int n : sizes) {
+            Random random = new Random(5);
+            List<UniversityStudent> students = new ArrayList<>(syntheticCohort(n, 42));
+            List<UniversityStudent> pool = syntheticCohort(1_000, 43);
+            StudentGraph base = new StudentGraph(students);
+            long baseFingerprint = fingerprint(base);
+            AtomicReference<Object[]> published = new AtomicReference<>(new Object[]{base, baseFingerprint});
+
+            AtomicBoolean done = new AtomicBoolean(false);
+            AtomicLong reads = new AtomicLong();
+            AtomicLong violations = new AtomicLong();
+            List<Thread> readers = new ArrayList<>();
+            for (int r = 0; r < 2; r++) {
+                Thread reader = new Thread(() -> {
+                    while (!done.get()) {
+                        Object[] version = published.get();
+                        if (fingerprint((StudentGraph) version[0]) != (long) version[1]) violations.incrementAndGet();
+                        reads.incrementAndGet();
+                    }
+                });
+                reader.start();
+                readers.add(reader);
+            }
+
+            int versions = 50;
+            long deriveNanos = 0;
+            int added = 0;
+            for (int v = 0; v < versions; v++) {
+                long start = System.nanoTime();
+                StudentGraph next = ((StudentGraph) published.get()[0]).copy();
+                for (int e = 0; e < 5; e++) {
+                    int pos = random.nextInt(students.size());
+                    UniversityStudent template = pool.get(random.nextInt(pool.size()));
+                    int op = random.nextInt(3);
+                    if (op == 0) {
+                        UniversityStudent s = copyAs("Versioned" + added++, template);
+                        students.add(s);
+                        next.addStudent(s);
+                    } else if (op == 1) {
+                        UniversityStudent s = copyAs(students.get(pos).getName(), template);
+                        students.set(pos, s);
+                        next.updateStudent(s);
+                    } else {
+                        next.removeStudent(students.remove(pos));
+                    }
+                }
+                deriveNanos += System.nanoTime() - start;
+                published.set(new Object[]{next, fingerprint(next)});
+            }
+
+            done.set(true);
+            for (Thread reader : readers) {
+                try {
+                    reader.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            long start = System.nanoTime();
+            StudentGraph rebuilt = new StudentGraph(students);
+            long rebuildNanos = System.nanoTime() - start;
+            boolean same = ((StudentGraph) published.get()[0]).hasSameAdjacency(rebuilt);
+            // The first version must still be exactly as it was published.
+            if (fingerprint(base) != baseFingerprint) violations.incrementAndGet();
+
+            System.out.println(String.format("  n=%d  copy+5 edits %.1f ms/version  rebuild %.0f ms  reader passes=%d  violations=%d  identical=%b",
+                    n, deriveNanos / 1e6 / versions, rebuildNanos / 1e6, reads.get(), violations.get(), same));
+            if (violations.get() > 0 || !same) {
+                throw new IllegalStateException("Published versions changed or the last one differs from a rebuild at n=" + n);
+            }
+        }
+    }
+
+    // Runs the given number of friend requests and chat messages between random students from 64 threads,
+    // once through the striped StudentLocks and once behind one global semaphore as the old threads did,
+    // then checks that every friendship is mutual and both sides of a chat saw the same message order,
+    // failing with an exception if either check finds a violation.
+    private static void benchmarkSocial(int[] sizes) {
+        System.out.println("Friend and chat stress test (64 threads, " + Runtime.getRuntime().availableProcessors() + " cores)");
+        int threads = 64;
+        for (int ops : sizes) {
+            for (boolean striped : new boolean[]{false, true}) {
+                List<UniversityStudent> students = syntheticCohort(10_000, 42);
+                Semaphore global = new Semaphore(1);
+                Thread[] workers = new Thread[threads];
+                int perThread = ops / threads;
+
+                long start = System.nanoTime();
+                for (int t = 0; t < threads; t++) {
+                    int worker = t;
+                    workers[t] = new Thread(() -> {
+                        Random random = new Random(worker);
+                        for (int k = 0; k < perThread; k++) {
+                            UniversityStudent a = students.get(random.nextInt(students.size()));
+                            UniversityStudent b = students.get(random.nextInt(students.size()));
+                            boolean friendRequest = random.nextBoolean();
+                            String message = worker + "/" + k;
+                            if (striped) {
+                                if (friendRequest) FriendRequestThread.befriend(a, b);
+                                else ChatThread.send(a, b, message);
+                            } else {
+                                global.acquireUninterruptibly();
+                                try {
+                                    if (friendRequest) {
+                                        a.addFriend(b.getName());
+                                        b.addFriend(a.getName());
+                                    } else {
+                                        String line = a.getName() + " to " + b.getName() + ": " + message;
+                                        a.addChatMessage(line);
+                                        b.addChatMessage(line);
+                                    }
+                                } finally {
+                                    global.release();
+                                }
+                            }
+                        }
+                    });
+                    workers[t].start();
+                }
+                for (Thread worker : workers) {
+                    try {
+                        worker.join();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+
+                Map<String, UniversityStudent> byName = new HashMap<>();
+                for (UniversityStudent s : students) byName.put(s.getName(), s);
+                long asymmetric = 0;
+                long disordered = 0;
+                for (UniversityStudent s : students) {
+                    for (String friend : s.getFriends()) {
+                        if (!byName.get(friend).hasFriend(s.getName())) asymmetric++;
+                    }
+                }
+                for (int i = 0; i < students.size(); i += 50) {
+                    UniversityStudent s = students.get(i);
+                    Map<String, List<String>> byPartner = new HashMap<>();
+                    for (String line : s.getChatHistory()) {
+                        String partner = chatPartner(line, s.getName());
+                        byPartner.computeIfAbsent(partner, key -> new ArrayList<>()).add(line);
+                    }
+                    for (Map.Entry<String, List<String>> entry : byPartner.entrySet()) {
+                        if (entry.getKey().equals(s.getName())) continue;
+                        List<String> theirs = new ArrayList<>();
+                        for (String line : byName.get(entry.getKey()).getChatHistory()) {
+                            if (chatPartner(line, entry.getKey()).equals(s.getName())) theirs.add(line);
+                        }
+                        if (!theirs.equals(entry.getValue())) disordered++;
+                    }
+                }
+
+                System.out.println(String.format("  ops=%d  %s: %.0f ops/s  asymmetric friendships=%d  pairs with diverging chat order=%d",
+                        perThread * threads, striped ? "striped locks" : "global semaphore", perThread * threads / seconds,
+                        asymmetric, disordered));
+                if (asymmetric != 0 || disordered != 0) {
+                    throw new IllegalStateException("Social updates lost atomicity: " + asymmetric + " asymmetric friendships, "
+                            + disordered + " pairs with diverging chat order");
+                }
+            }
+        }
+    }
+
+    // Returns the other student named in a "A to B: message" chat line.
+    private static String chatPartner(String line, String self) {
+        int to = line.indexOf(" to ");
+        int colon = line.indexOf(": ", to);
+        String from = line.substring(0, to);
+        String recipient = line.substring(to + 4, colon);
+        return from.equals(self) ? recipient : from;
+    }
+
+    // Checks GaleShapley on the checkpoint-two roommate fixture (run from the repository root), then times the
+    // dense-id and name-based matchers on cohorts whose students each rank 200 random others.
+    private static void benchmarkRoommates(int[] sizes) throws IOException {
+        System.out.println("GaleShapley: dense-id preference tables vs name-based matching");
+        Path fixture = Paths.get("testing/testingcheckpointtwo/roommate_sample.txt");
+        Path fixtureOutput = Paths.get("testing/testingcheckpointtwo/roommate_sample_output.txt");
+        if (Files.exists(fixture) && Files.exists(fixtureOutput)) {
+            List<UniversityStudent> students = DataParser.parseStudents(fixture.toString());
+            List<UniversityStudent> reference = DataParser.parseStudents(fixture.toString());
+            GaleShapley.assignRoommates(students);
+            GaleShapley.assignRoommatesByName(reference);
+
+            Set<String> pairs = new HashSet<>();
+            for (UniversityStudent s : students) {
+                if (s.getRoommate() != null) pairs.add(s.getName() + " is roommates with " + s.getRoommate().getName());
+            }
+            Set<String> expected = new HashSet<>();
+            for (String line : Files.readAllLines(fixtureOutput, StandardCharsets.UTF_8)) {
+                if (line.contains(" is roommates with ")) expected.add(line.trim());
+            }
+            boolean matches = pairs.equals(expected);
+            boolean same = sameRoommates(students, reference);
+            System.out.println("  fixture: " + pairs.size() + " assignments  matches expected output=" + matches
+                    + "  identical to name-based=" + same);
+            if (!matches || !same) throw new IllegalStateException("Roommates of the fixture differ from the expected output");
+        } else {
+            System.out.println("  fixture: skipped, run from the repository root to include " + fixture);
+        }
+
+        int prefCount = 200;
+        for (int n : sizes) {
+            List<UniversityStudent> fast = new ArrayList<>(n);
+            List<UniversityStudent> byName = new ArrayList<>(n);
+            Random random = new Random(n);
+            for (UniversityStudent template : syntheticCohort(n, 42)) {
+                List<String> prefs = new ArrayList<>(prefCount);
+                for (int p = 0; p < prefCount; p++) {
+                    prefs.add("Student" + random.nextInt(n));
+                }
+                fast.add(new UniversityStudent(template.getName(), template.getAge(), template.getGender(), template.getYear(),
+                        template.getMajor(), template.getGpa(), prefs, template.getPreviousInternships()));
+                byName.add(copyAs(template.getName(), fast.get(fast.size() - 1)));
+            }
+
+            long start = System.nanoTime();
+            GaleShapley.assignRoommatesByName(byName);
+            long byNameNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            GaleShapley.assignRoommates(fast);
+            long fastNanos = System.nanoTime() - start;
+
+            System.out.println(String.format("  n=%d  prefs=%d  name-based %.0f ms  dense-id %.0f ms (%.1fx)  identical=%b",
+                    n, prefCount, byNameNanos / 1e6, fastNanos / 1e6, (double) byNameNanos / fastNanos, sameRoommates(fast, byName)));
+            if (!sameRoommates(fast, byName)) throw new IllegalStateException("Dense-id roommates differ from name-based at n=" + n);
+        }
+    }
+
+    // Splits each cohort into clusters of 64 students who each rank 32 random cluster-mates, like dorm floors,
+    // then times the sequential GaleShapley and the per-component run on pools of 1, 2, 4, ... workers up to
+    // the core count, checking that every run assigns the same roommates.
+    private static void benchmarkPartitionedRoommates(int[] sizes) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println("GaleShapley by preference component (" + cores + " cores)");
+        int cluster = 64;
+        for (int n : sizes) {
+            Random random = new Random(n);
+            List<UniversityStudent> templates = new ArrayList<>(n);
+            for (UniversityStudent template : syntheticCohort(n, 42)) {
+                int i = templates.size();
+                int base = i - i % cluster;
+                List<String> prefs = new ArrayList<>(32);
+                for (int p = 0; p < 32; p++) {
+                    prefs.add("Student" + Math.min(n - 1, base + random.nextInt(cluster)));
+                }
+                templates.add(new UniversityStudent(template.getName(), template.getAge(), template.getGender(), template.getYear(),
+                        template.getMajor(), template.getGpa(), prefs, template.getPreviousInternships()));
+            }
+
+            List<UniversityStudent> sequential = new ArrayList<>(n);
+            for (UniversityStudent s : templates) sequential.add(copyAs(s.getName(), s));
+            // Collect first so the copies' garbage is not charged to the timed run.
+            usedHeap();
+            long start = System.nanoTime();
+            GaleShapley.assignRoommates(sequential);
+            long sequentialNanos = System.nanoTime() - start;
+            System.out.println(String.format("  n=%d  sequential %.0f ms", n, sequentialNanos / 1e6));
+
+            for (int threads = 1; ; threads = Math.min(threads * 2, cores)) {
+                List<UniversityStudent> partitioned = new ArrayList<>(n);
+                for (UniversityStudent s : templates) partitioned.add(copyAs(s.getName(), s));
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                usedHeap();
+                start = System.nanoTime();
+                GaleShapley.assignRoommates(partitioned, pool);
+                long nanos = System.nanoTime() - start;
+                pool.shutdown();
+                System.out.println(String.format("  n=%d  %d worker(s) %.0f ms  speedup %.2fx  identical=%b",
+                        n, threads, nanos / 1e6, (double) sequentialNanos / nanos, sameRoommates(sequential, partitioned)));
+                if (!sameRoommates(sequential, partitioned)) {
+                    throw new IllegalStateException("Per-component roommates on " + threads + " worker(s) differ at n=" + n);
+                }
+                if (threads == cores) break;
+            }
+        }
+    }
+
+    // Pods over an internship-only network, which stays sparse at 100k students. Reports the share of
+    // edge weight kept inside pods for grown, propagated and grown-then-refined pods; with company
+    // cliques of about 75 students, pods of 8 can keep only a few percent. Checks that propagation gives the
+    // same pods on one worker and on the common pool, then replaces 1% of the students' internships and
+    // compares repod on the new graph with a full propagation over it.
+    private static void benchmarkPods(int[] sizes) throws IOException {
+        System.out.println("Pod formation: grown pods vs size-bounded label propagation, and incremental repod");
+        Path fixture = Paths.get("testing/testingcheckpointtwo/pod_sample.txt");
+        Path fixtureOutput = Paths.get("testing/testingcheckpointtwo/pod_sample_output.txt");
+        if (Files.exists(fixture) && Files.exists(fixtureOutput)) {
+            // The fixture's graph was built before roommates were assigned, so roommate weights are not in it.
+            List<UniversityStudent> students = DataParser.parseStudents(fixture.toString());
+            StudentGraph graph = new StudentGraph(students);
+            GaleShapley.assignRoommates(students);
+            PodFormation.Pods pods = new PodFormation(graph).growPods(4);
+            List<String> lines = new ArrayList<>();
+            for (int p = 0; p < pods.count(); p++) {
+                StringBuilder line = new StringBuilder("Pod " + p + ":");
+                for (UniversityStudent s : pods.members(p)) line.append(' ').append(s.getName()).append(',');
+                lines.add(line.toString());
+            }
+            List<String> expected = new ArrayList<>();
+            for (String line : Files.readAllLines(fixtureOutput, StandardCharsets.UTF_8)) {
+                if (line.trim().matches("Pod \\d+:.*")) expected.add(line.trim());
+            }
+            System.out.println("  fixture: " + pods.count() + " pods  matches expected output=" + lines.equals(expected));
+            if (!lines.equals(expected)) throw new IllegalStateException("Pods of the fixture differ from the expected output");
+        } else {
+            System.out.println("  fixture: skipped, run from the repository root to include " + fixture);
+        }
+
+        ConnectionScorer scorer = ConnectionScorer.parse("roommate=4, internship=3");
+        int podSize = 8;
+        ForkJoinPool single = new ForkJoinPool(1);
+        try {
+            for (int n : sizes) {
+                List<UniversityStudent> students = syntheticCohort(n, 42);
+                CompactStudentGraph graph = new CompactStudentGraph(students, scorer);
+                PodFormation formation = new PodFormation(graph);
+                long total = totalWeight(graph);
+                usedHeap();
+
+                long start = System.nanoTime();
+                PodFormation.Pods grown = formation.growPods(podSize);
+                long growNanos = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                PodFormation.Pods sequential = formation.propagatePods(podSize, single);
+                long singleNanos = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                PodFormation.Pods parallel = formation.propagatePods(podSize, ForkJoinPool.commonPool());
+                long parallelNanos = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                PodFormation.Pods refined = formation.refinePods(grown, ForkJoinPool.commonPool());
+                long refineNanos = System.nanoTime() - start;
+
+                System.out.println(String.format("  n=%d  edges=%d  pod size %d  |  grown %.0f ms kept %.2f%% (%d pods)  |  propagated %.0f ms on 1 worker, %.0f ms on %d, kept %.2f%% (%d pods, largest %d)  same on both=%b  |  grown then refined +%.0f ms kept %.2f%%",
+                        n, graph.edgeCount(), podSize, growNanos / 1e6, 100.0 * grown.internalWeight() / total, grown.count(),
+                        singleNanos / 1e6, parallelNanos / 1e6, ForkJoinPool.commonPool().getParallelism(),
+                        100.0 * parallel.internalWeight() / total, parallel.count(), largestPod(parallel),
+                        samePods(sequential, parallel), refineNanos / 1e6, 100.0 * refined.internalWeight() / total));
+                if (!samePods(sequential, parallel)) throw new IllegalStateException("Pods differ between 1 and many workers at n=" + n);
+
+                Random random = new Random(n);
+                List<UniversityStudent> edited = new ArrayList<>(students);
+                List<UniversityStudent> donors = syntheticCohort(1_000, 43);
+                Set<String> changed = new HashSet<>();
+                for (int k = 0; k < n / 100; k++) {
+                    int pos = random.nextInt(n);
+                    UniversityStudent s = copyAs(edited.get(pos).getName(), donors.get(random.nextInt(donors.size())));
+                    edited.set(pos, s);
+                    changed.add(s.getName());
+                }
+                CompactStudentGraph editedGraph = new CompactStudentGraph(edited, scorer);
+                PodFormation editedFormation = new PodFormation(editedGraph);
+                long editedTotal = totalWeight(editedGraph);
+
+                start = System.nanoTime();
+                PodFormation.Pods repodded = editedFormation.repod(parallel, changed, ForkJoinPool.commonPool());
+                long repodNanos = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                PodFormation.Pods fresh = editedFormation.propagatePods(podSize, ForkJoinPool.commonPool());
+                long freshNanos = System.nanoTime() - start;
+
+                System.out.println(String.format("    %d students changed  |  repod %.0f ms kept %.2f%% (largest %d)  |  full propagation %.0f ms kept %.2f%%",
+                        changed.size(), repodNanos / 1e6, 100.0 * repodded.internalWeight() / editedTotal, largestPod(repodded),
+                        freshNanos / 1e6, 100.0 * fresh.internalWeight() / editedTotal));
+            }
+        } finally {
+            single.shutdown();
+        }
+    }
+
+    private static long totalWeight(CompactStudentGraph graph) {
+        long total = 0;
+        for (int e = 0; e < graph.edgeEnd(graph.size() - 1); e++) {
+            total += graph.weightAt(e);
+        }
+        return total / 2;
+    }
+
+    private static int largestPod(PodFormation.Pods pods) {
+        int largest = 0;
+        for (int p = 0; p < pods.count(); p++) {
+            largest = Math.max(largest, pods.size(p));
+        }
+        return largest;
+    }
+
+    private static boolean samePods(PodFormation.Pods a, PodFormation.Pods b) {
+        if (a.count() != b.count()) return false;
+        for (int p = 0; p < a.count(); p++) {
+            if (!a.members(p).equals(b.members(p))) return false;
+        }
+        return true;
+    }
+
+    // Builds a cohort of 64-student preference clusters, then applies 500 random edits through RoommateMatcher:
+    // mostly replaced preference lists, plus additions and removals. Every 50th edit the published assignment
+    // is checked against a full GaleShapley run over the matcher's cohort, which is also timed.
+    private static void benchmarkRematch(int[] sizes) {
+        System.out.println("Incremental roommate matching: RoommateMatcher edits vs full GaleShapley runs");
+        int cluster = 64;
+        int edits = 500;
+        for (int n : sizes) {
+            Random random = new Random(n);
+            List<UniversityStudent> cohort = new ArrayList<>(n);
+            for (UniversityStudent template : syntheticCohort(n, 42)) {
+                cohort.add(template.withRoommatePreferences(clusterPreferences(cohort.size(), n, cluster, random)));
+            }
+            RoommateMatcher matcher = new RoommateMatcher(cohort);
+
+            long[] editNanos = new long[edits];
+            long fullNanos = 0;
+            int checks = 0;
+            int mismatches = 0;
+            long changed = 0;
+            int added = n;
+            for (int k = 0; k < edits; k++) {
+                List<UniversityStudent> current = matcher.students();
+                UniversityStudent target = current.get(random.nextInt(current.size()));
+                int kind = random.nextInt(10);
+                long start = System.nanoTime();
+                if (kind < 7) {
+                    int id = Integer.parseInt(target.getName().substring("Student".length()));
+                    changed += matcher.update(target.withRoommatePreferences(clusterPreferences(id, n, cluster, random))).size();
+                } else if (kind < 9) {
+                    int id = random.nextInt(n);
+                    UniversityStudent student = copyAs("Student" + added++, target);
+                    changed += matcher.add(student.withRoommatePreferences(clusterPreferences(id, n, cluster, random))).size();
+                } else {
+                    changed += matcher.remove(target.getName()).size();
+                }
+                editNanos[k] = System.nanoTime() - start;
+
+                if (k % 50 == 49) {
+                    List<UniversityStudent> students = matcher.students();
+                    start = System.nanoTime();
+                    int[] partner = GaleShapley.partners(students);
+                    fullNanos += System.nanoTime() - start;
+                    checks++;
+                    RoommateMatcher.Assignment assignment = matcher.assignment();
+                    for (int i = 0; i < students.size(); i++) {
+                        String expected = partner[i] < 0 ? null : students.get(partner[i]).getName();
+                        if (!Objects.equals(expected, assignment.roommateOf(students.get(i).getName()))) mismatches++;
+                    }
+                }
+            }
+
+            long total = 0;
+            for (long nanos : editNanos) total += nanos;
+            Arrays.sort(editNanos);
+            System.out.println(String.format("  n=%d  edits=%d  per edit mean %.2f ms  p99 %.2f ms  roommates changed/edit %.1f  |  full run %.0f ms  mismatches=%d",
+                    n, edits, total / 1e6 / edits, editNanos[edits * 99 / 100] / 1e6, (double) changed / edits,
+                    fullNanos / 1e6 / checks, mismatches));
+            if (mismatches > 0) throw new IllegalStateException(mismatches + " rematches differ from a full run at n=" + n);
+        }
+    }
+
+    // 32 random names from the 64-student cluster that id falls in.
+    private static List<String> clusterPreferences(int id, int n, int cluster, Random random) {
+        int base = id - id % cluster;
+        List<String> prefs = new ArrayList<>(32);
+        for (int p = 0; p < 32; p++) {
+            prefs.add("Student" + Math.min(n - 1, base + random.nextInt(cluster)));
+        }
+        return prefs;
+    }
+
+    // Students sit on a ring and each ranks 40 of the 80 nearest. In "random" cohorts the order is shuffled and a
+    // stable matching rarely exists; in "scored" cohorts both students of a pair agree on a pair score and rank by it,
+    // which always admits one. Cohorts of up to 2,000 are also run with complete random lists, the O(n^2) worst case.
+    // Blocking pairs are counted over mutually acceptable pairs for both matchers.
+    private static void benchmarkStableRoommates(int[] sizes) {
+        checkStableRoommates(20_000);
+        System.out.println("Stable roommates: Irving vs GaleShapley");
+        for (int n : sizes) {
+            for (String mode : new String[]{"random", "scored", "complete"}) {
+                if (mode.equals("complete") && n > 2_000) continue;
+                Random random = new Random(n);
+                List<UniversityStudent> irving = new ArrayList<>(n);
+                List<UniversityStudent> galeShapley = new ArrayList<>(n);
+                for (UniversityStudent template : syntheticCohort(n, 42)) {
+                    int i = irving.size();
+                    List<Integer> others = new ArrayList<>();
+                    if (mode.equals("complete")) {
+                        for (int j = 0; j < n; j++) {
+                            if (j != i) others.add(j);
+                        }
+                    } else {
+                        for (int d = -40; d <= 40; d++) {
+                            if (d != 0) others.add(Math.floorMod(i + d, n));
+                        }
+                    }
+                    Collections.shuffle(others, random);
+                    if (!mode.equals("complete")) others = new ArrayList<>(others.subList(0, 40));
+                    if (mode.equals("scored")) others.sort(Comparator.comparingLong(j -> -pairScore(i, j)));
+
+                    List<String> prefs = new ArrayList<>(others.size());
+                    for (int j : others) prefs.add("Student" + j);
+                    irving.add(new UniversityStudent(template.getName(), template.getAge(), template.getGender(), template.getYear(),
+                            template.getMajor(), template.getGpa(), prefs, template.getPreviousInternships()));
+                    galeShapley.add(copyAs(template.getName(), irving.get(i)));
+                }
+
+                usedHeap();
+                long allocated = allocatedBytes();
+                long start = System.nanoTime();
+                boolean stable = StableRoommates.assignRoommates(irving, false);
+                long irvingNanos = System.nanoTime() - start;
+                allocated = allocatedBytes() - allocated;
+
+                String fallback = "";
+                if (!stable) {
+                    start = System.nanoTime();
+                    StableRoommates.assignRoommates(irving, true);
+                    fallback = String.format(", with greedy completion %.0f ms", (System.nanoTime() - start) / 1e6);
+                }
+
+                start = System.nanoTime();
+                GaleShapley.assignRoommates(galeShapley);
+                long galeShapleyNanos = System.nanoTime() - start;
+
+                StableRoommates.Lists lists = StableRoommates.Lists.build(irving);
+                System.out.println(String.format("  n=%d %s  acceptable entries=%d  Irving %.0f ms, %d MB allocated, stable=%b, unpaired=%d, blocking=%d%s"
+                                + "  |  GaleShapley %.0f ms, unpaired=%d, blocking=%d",
+                        n, mode, lists.pref.length, irvingNanos / 1e6, allocated >> 20, stable,
+                        unpaired(irving), blockingPairs(lists, irving), fallback,
+                        galeShapleyNanos / 1e6, unpaired(galeShapley), blockingPairs(lists, galeShapley)));
+            }
+        }
+    }
+
+    // Checks Irving's algorithm against enumeration of every matching on small random instances whose
+    // lists include repeats, unknown names and the student's own name: a stable matching must be found
+    // exactly when one exists, be stable, and leave unmatched the students every stable matching leaves out.
+    private static void checkStableRoommates(int instances) {
+        Random random = new Random(2024);
+        int solvable = 0;
+        for (int instance = 0; instance < instances; instance++) {
+            int n = 2 + random.nextInt(8);
+            List<UniversityStudent> students = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                List<String> prefs = new ArrayList<>();
+                // Half the lists name everyone, which makes instances without a stable matching common.
+                if (random.nextBoolean()) {
+                    for (int j = 0; j < n; j++) prefs.add("Room" + j);
+                    Collections.shuffle(prefs, random);
+                }
+                int extra = random.nextInt(prefs.isEmpty() ? n + 3 : 3);
+                for (int k = 0; k < extra; k++) {
+                    int pick = random.nextInt(n + 2);
+                    prefs.add(random.nextInt(prefs.size() + 1), pick < n ? "Room" + pick : "Unknown" + pick);
+                }
+                students.add(new UniversityStudent("Room" + i, 20, "Female", 1, "History", 3.0, prefs, new ArrayList<>()));
+            }
+
+            // rank[i][j] is where i first lists j, or -1 if the pair is not mutually acceptable.
+            int[][] rank = new int[n][n];
+            for (int i = 0; i < n; i++) {
+                List<String> prefs = students.get(i).getRoommatePreferences();
+                for (int j = 0; j < n; j++) {
+                    rank[i][j] = i == j ? -1 : prefs.indexOf("Room" + j);
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    if (rank[j][i] < 0) rank[i][j] = -1;
+                }
+            }
+
+            // Every stable matching leaves the same students unmatched, so one witness is enough.
+            int[] witness = bruteForceStable(rank, new int[n], 0);
+            int[] partner = StableRoommates.solve(StableRoommates.Lists.build(students));
+            if ((witness == null) != (partner == null)) {
+                throw new IllegalStateException("Instance " + instance + ": Irving says stable=" + (partner != null)
+                        + " but enumeration says " + (witness != null));
+            }
+            if (partner == null) continue;
+            solvable++;
+            for (int i = 0; i < n; i++) {
+                if (partner[i] >= 0 && (partner[partner[i]] != i || rank[i][partner[i]] < 0)) {
+                    throw new IllegalStateException("Instance " + instance + ": Irving paired " + i + " with " + partner[i] + " invalidly");
+                }
+                if ((partner[i] < 0) != (witness[i] < 0)) {
+                    throw new IllegalStateException("Instance " + instance + ": student " + i + " is matched in only one stable matching");
+                }
+            }
+            if (!isStable(rank, partner)) throw new IllegalStateException("Instance " + instance + ": Irving's matching has a blocking pair");
+        }
+        System.out.println(String.format("Brute-force check: %d instances of 2-9 students, %d with a stable matching, all agree", instances, solvable));
+    }
+
+    // Extends a partial matching of students below i (partner -1 for unmatched) to a stable one, or returns null.
+    private static int[] bruteForceStable(int[][] rank, int[] partner, int i) {
+        int n = rank.length;
+        if (i == 0) Arrays.fill(partner, -2);
+        while (i < n && partner[i] != -2) i++;
+        if (i == n) return isStable(rank, partner) ? partner.clone() : null;
+
+        partner[i] = -1;
+        int[] found = bruteForceStable(rank, partner, i + 1);
+        if (found != null) return found;
+        for (int j = i + 1; j < n; j++) {
+            if (partner[j] != -2 || rank[i][j] < 0) continue;
+            partner[i] = j;
+            partner[j] = i;
+            found = bruteForceStable(rank, partner, i + 1);
+            partner[j] = -2;
+            if (found != null) return found;
+        }
+        partner[i] = -2;
+        return null;
+    }
+
+    // Returns true if no acceptable pair would both rather be together than with their partners.
+    private static boolean isStable(int[][] rank, int[] partner) {
+        int n = rank.length;
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                if (rank[i][j] < 0 || partner[i] == j) continue;
+                boolean iPrefers = partner[i] < 0 || rank[i][j] < rank[i][partner[i]];
+                boolean jPrefers = partner[j] < 0 || rank[j][i] < rank[j][partner[j]];
+                if (iPrefers && jPrefers) return false;
+            }
+        }
+        return true;
+    }
+
+    // Symmetric pseudo-random score of a pair, the same from either side.
+    private static long pairScore(int i, int j) {
+        long key = (long) Math.min(i, j) << 32 | Math.max(i, j);
+        key *= 0x9E3779B97F4A7C15L;
+        return key ^ (key >>> 29);
+    }
+
+    // Bytes allocated so far by the calling thread.
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static int unpaired(List<UniversityStudent> students) {
+        int count = 0;
+        for (UniversityStudent s : students) {
+            if (s.getRoommate() == null) count++;
+        }
+        return count;
+    }
+
+    // Counts mutually acceptable pairs who both rank each other above their assigned roommates.
+    private static long blockingPairs(StableRoommates.Lists lists, List<UniversityStudent> students) {
+        Map<String, Integer> ids = new HashMap<>();
+        for (int i = 0; i < students.size(); i++) ids.put(students.get(i).getName(), i);
+        // A roommate outside the acceptable list ranks below everyone on it.
+        int[] partnerRank = new int[lists.n];
+        for (int i = 0; i < lists.n; i++) {
+            UniversityStudent roommate = students.get(i).getRoommate();
+            int partner = roommate == null ? -1 : ids.get(roommate.getName());
+            partnerRank[i] = Integer.MAX_VALUE;
+            for (int e = lists.start[i]; e < lists.start[i + 1]; e++) {
+                if (lists.pref[e] == partner) partnerRank[i] = e - lists.start[i];
+            }
+        }
+        long blocking = 0;
+        for (int i = 0; i < lists.n; i++) {
+            for (int e = lists.start[i]; e < lists.start[i + 1]; e++) {
+                int j = lists.pref[e];
+                if (j < i) continue;
+                int rank = e - lists.start[i];
+                int theirRank = lists.mirror[e] - lists.start[j];
+                if (rank < partnerRank[i] && theirRank < partnerRank[j]) blocking++;
+            }
+        }
+        return blocking;
+    }
+
+    // Returns true if position i of both lists has a roommate of the same name, or none, for every i.
+    private static boolean sameRoommates(List<UniversityStudent> a, List<UniversityStudent> b) {
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++) {
+            UniversityStudent x = a.get(i).getRoommate();
+            UniversityStudent y = b.get(i).getRoommate();
+            if (!Objects.equals(x == null ? null : x.getName(), y == null ? null : y.getName())) return false;
+        }
+        return true;
+    }
+
+    // Runs the given number of user sessions at once: each waits 1 ms of think time before each of a friend
+    // request and two chats. Sessions are submitted together to a fixed pool of 4, as loadTestCase used to
+    // create, and to SocialExecutor.shared(); reports throughput and submit-to-finish latency percentiles.
+    // Then times 2,000 batches of four tasks, each with its own pool as before and on the shared executor.
+    private static void benchmarkSessions(int[] sizes) {
+        SocialExecutor social = SocialExecutor.shared();
+        System.out.println("Concurrent sessions: fixed pool of 4 vs SocialExecutor ("
+                + (social.usesVirtualThreads() ? "virtual threads" : "fallback pool, no virtual threads on this JDK") + ", "
+                + Runtime.getRuntime().availableProcessors() + " cores)");
+        List<UniversityStudent> students = syntheticCohort(1_000, 42);
+
+        for (int sessions : sizes) {
+            for (boolean shared : new boolean[]{false, true}) {
+                long[] latencies = new long[sessions];
+                List<Runnable> tasks = new ArrayList<>(sessions);
+                long[] submitted = new long[1];
+                for (int i = 0; i < sessions; i++) {
+                    int session = i;
+                    UniversityStudent a = students.get((session * 7) % students.size());
+                    UniversityStudent b = students.get((session * 13 + 1) % students.size());
+                    tasks.add(() -> {
+                        try {
+                            Thread.sleep(1);
+                            FriendRequestThread.befriend(a, b);
+                            Thread.sleep(1);
+                            ChatThread.send(a, b, "session " + session);
+                            Thread.sleep(1);
+                            ChatThread.send(b, a, "reply " + session);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        latencies[session] = System.nanoTime() - submitted[0];
+                    });
+                }
+
+                long start = System.nanoTime();
+                submitted[0] = start;
+                try {
+                    if (shared) {
+                        social.submitAll(tasks).get();
+                    } else {
+                        ExecutorService pool = Executors.newFixedThreadPool(4);
+                        for (Runnable task : tasks) pool.submit(task);
+                        pool.shutdown();
+                        pool.awaitTermination(1, TimeUnit.HOURS);
+                    }
+                } catch (InterruptedException | ExecutionException e) {
+                    throw new RuntimeException(e);
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+
+                Arrays.sort(latencies);
+                System.out.println(String.format("  sessions=%d  %s: %.0f sessions/s  latency p50=%.0f ms  p99=%.0f ms  max=%.0f ms",
+                        sessions, shared ? "SocialExecutor" : "fixed pool of 4", sessions / seconds,
+                        latencies[sessions / 2] / 1e6, latencies[sessions * 99 / 100] / 1e6, latencies[sessions - 1] / 1e6));
+            }
+        }
+
+        int batches = 2_000;
+        for (boolean shared : new boolean[]{false, true}) {
+            long start = System.nanoTime();
+            try {
+                for (int k = 0; k < batches; k++) {
+                    UniversityStudent a = students.get(k % students.size());
+                    UniversityStudent b = students.get((k + 1) % students.size());
+                    // The static actions rather than the Runnables, so the timings do not include console output.
+                    List<Runnable> batch = Arrays.asList(() -> FriendRequestThread.befriend(a, b), () -> ChatThread.send(a, b, "hi"),
+                            () -> FriendRequestThread.befriend(b, a), () -> ChatThread.send(b, a, "hi back"));
+                    if (shared) {
+                        social.submitAll(batch).get();
+                    } else {
+                        ExecutorService pool = Executors.newFixedThreadPool(4);
+                        for (Runnable task : batch) pool.submit(task);
+                        pool.shutdown();
+                        pool.awaitTermination(1, TimeUnit.MINUTES);
+                    }
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                throw new RuntimeException(e);
+            }
+            System.out.println(String.format("  batches of 4 tasks, %s: %.1f us/batch",
+                    shared ? "shared SocialExecutor" : "new pool per batch", (System.nanoTime() - start) / 1e3 / batches));
+        }
+    }
+
+    // Sends the given numbers of messages between random students of a 10k cohort, once into per-student
+    // lists as addChatMessage used to and once into a ChatLog capped at 8 segments of 4 MB, reporting the
+    // heap retained after each and the latency of reading a 50-message page from a random student.
+    private static void benchmarkChatLog(int[] sizes) throws IOException {
+        System.out.println("Chat storage: per-student lists vs ChatLog (4 MB segments, 8 retained)");
+        List<UniversityStudent> students = syntheticCohort(10_000, 42);
+        for (int messages : sizes) {
+            Random random = new Random(messages);
+            long before = usedHeap();
+            Map<Integer, List<String>> lists = new HashMap<>();
+            for (int k = 0; k < messages; k++) {
+                UniversityStudent a = students.get(random.nextInt(students.size()));
+                UniversityStudent b = students.get(random.nextInt(students.size()));
+                String line = a.getName() + " to " + b.getName() + ": message " + k;
+                lists.computeIfAbsent(a.getChatId(), key -> new ArrayList<>()).add(line);
+                lists.computeIfAbsent(b.getChatId(), key -> new ArrayList<>()).add(line);
+            }
+            long listBytes = usedHeap() - before;
+            // Read after measuring, so the lists are still reachable while the heap is sampled.
+            int listStudents = lists.size();
+            lists = null;
+
+            Path directory = Files.createTempDirectory("chatbench");
+            random = new Random(messages);
+            before = usedHeap();
+            long appendNanos;
+            long pageNanos = 0;
+            int pages = 10_000;
+            long pageLines = 0;
+            try (ChatLog log = new ChatLog(directory, 4 << 20, 8)) {
+                long start = System.nanoTime();
+                for (int k = 0; k < messages; k++) {
+                    UniversityStudent a = students.get(random.nextInt(students.size()));
+                    UniversityStudent b = students.get(random.nextInt(students.size()));
+                    log.append(a, b, a.getName() + " to " + b.getName() + ": message " + k);
+                }
+                appendNanos = System.nanoTime() - start;
+                long logBytes = usedHeap() - before;
+
+                for (int q = 0; q < pages; q++) {
+                    UniversityStudent s = students.get(random.nextInt(students.size()));
+                    start = System.nanoTime();
+                    int count = log.count(s);
+                    pageLines += log.read(s, Math.max(0, count - 50), 50).size();
+                    pageNanos += System.nanoTime() - start;
+                }
+
+                System.out.println(String.format("  messages=%d  lists=%d MB (%d students)  ChatLog=%d MB (%d segments)  append %.2f M msg/s  page of 50: %.1f us  avg lines=%.1f",
+                        messages, listBytes >> 20, listStudents, logBytes >> 20, log.segmentCount(), messages / (appendNanos / 1e3),
+                        pageNanos / 1e3 / pages, (double) pageLines / pages));
+            }
+            benchmarkConcurrentChat(students, Math.min(messages, 500_000));
+        }
+    }
+
+    // Appends from several threads at once while others read pages, into a log large enough to retain
+    // everything, then checks that every student holds each writer's messages in the order they were sent
+    // and that no message was lost or indexed twice.
+    private static void benchmarkConcurrentChat(List<UniversityStudent> students, int messages) throws IOException {
+        int writers = Math.max(2, Runtime.getRuntime().availableProcessors());
+        Path directory = Files.createTempDirectory("chatbench");
+        try (ChatLog log = new ChatLog(directory, 4 << 20, 64)) {
+            AtomicBoolean writing = new AtomicBoolean(true);
+            AtomicLong reads = new AtomicLong();
+            Thread reader = new Thread(() -> {
+                Random random = new Random(7);
+                while (writing.get()) {
+                    UniversityStudent s = students.get(random.nextInt(students.size()));
+                    log.read(s, Math.max(0, log.count(s) - 50), 50);
+                    reads.incrementAndGet();
+                }
+            });
+            Thread[] threads = new Thread[writers];
+            long expected = 0;
+            int[] sent = new int[writers];
+            for (int t = 0; t < writers; t++) {
+                int writer = t;
+                sent[t] = messages / writers;
+                threads[t] = new Thread(() -> {
+                    Random random = new Random(writer);
+                    for (int k = 0; k < sent[writer]; k++) {
+                        UniversityStudent a = students.get(random.nextInt(students.size()));
+                        UniversityStudent b = students.get(random.nextInt(students.size()));
+                        log.append(a, b, writer + " " + k);
+                    }
+                });
+            }
+            for (int t = 0; t < writers; t++) {
+                Random random = new Random(t);
+                for (int k = 0; k < sent[t]; k++) {
+                    UniversityStudent a = students.get(random.nextInt(students.size()));
+                    UniversityStudent b = students.get(random.nextInt(students.size()));
+                    expected += a.getChatId() == b.getChatId() ? 1 : 2;
+                }
+            }
+
+            long start = System.nanoTime();
+            reader.start();
+            for (Thread thread : threads) thread.start();
+            for (Thread thread : threads) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            long appendNanos = System.nanoTime() - start;
+            writing.set(false);
+            try {
+                reader.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            long indexed = 0;
+            int reordered = 0;
+            for (UniversityStudent s : students) {
+                int[] last = new int[writers];
+                Arrays.fill(last, -1);
+                for (String line : log.read(s, 0, Integer.MAX_VALUE)) {
+                    int space = line.indexOf(' ');
+                    int writer = Integer.parseInt(line.substring(0, space));
+                    int k = Integer.parseInt(line.substring(space + 1));
+                    if (k <= last[writer]) reordered++;
+                    last[writer] = k;
+                    indexed++;
+                }
+            }
+            System.out.println(String.format("  concurrent: %d writers + 1 reader  append %.2f M msg/s  pages read=%d  indexed=%d expected=%d  out of order=%d",
+                    writers, writers * (messages / writers) / (appendNanos / 1e3), reads.get(), indexed, expected, reordered));
+            if (indexed != expected || reordered != 0) {
+                throw new IllegalStateException("ChatLog lost, duplicated or reordered messages under concurrent appends");
+            }
+        }
+    }
+
+    // Order-sensitive hash of every adjacency list.
+    private static long fingerprint(StudentGraph graph) {
+        long hash = 0;
+        for (UniversityStudent s : graph.getAllNodes()) {
+            long list = s.getName().hashCode();
+            for (StudentGraph.Edge edge : graph.getNeighbors(s)) {
+                list = list * 31 + edge.neighbor.getName().hashCode() * 7L + edge.weight;
+            }
+            hash += list;
+        }
+        return hash;
+    }
+
+    private static UniversityStudent copyAs(String name, UniversityStudent template) {
+        return new UniversityStudent(name, template.getAge(), template.getGender(), template.getYear(),
+                template.getMajor(), template.getGpa(), template.getRoommatePreferences(), template.getPreviousInternships());
+    }
+
+    // Compares a cold start from a text roster with a cold start from a snapshot of the same cohort,
+    // and checks that the snapshot restores identical students, roommates and adjacency lists.
+    private static void benchmarkSnapshot(int[] sizes) throws IOException {
+        System.out.println("Snapshot cold start");
+        for (int n : sizes) {
+            Path roster = Files.createTempFile("roster", ".txt");
+            Path snapshot = Files.createTempFile("roster", ".snapshot");
+            try {
+                writeRoster(syntheticCohort(n, 42), roster);
+
+                long start = System.nanoTime();
+                List<UniversityStudent> parsed = DataParser.parseStudents(roster.toString());
+                // Every seventh pair shares a room so roommate links and weights are covered.
+                for (int i = 0; i + 1 < parsed.size(); i += 14) {
+                    parsed.get(i).setRoommate(parsed.get(i + 1));
+                    parsed.get(i + 1).setRoommate(parsed.get(i));
+                }
+                StudentGraph built = new StudentGraph(parsed);
+                long textNanos = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                StudentSnapshot.write(snapshot, parsed, built);
+                long writeNanos = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                StudentSnapshot loaded = StudentSnapshot.load(snapshot);
+                long loadNanos = System.nanoTime() - start;
+
+                List<UniversityStudent> restored = loaded.getStudents();
+                // Lookups on the loaded graph are served from the mapped file until hasSameAdjacency expands it.
+                boolean same = restored.size() == parsed.size();
+                for (int i = 0; same && i < restored.size(); i++) {
+                    same = loaded.getGraph().getNeighbors(restored.get(i)).toString().equals(built.getNeighbors(parsed.get(i)).toString());
+                }
+                same = same && loaded.getGraph().hasSameAdjacency(built);
+                for (int i = 0; same && i < parsed.size(); i++) {
+                    UniversityStudent a = parsed.get(i);
+                    UniversityStudent b = restored.get(i);
+                    same = a.toString().equals(b.toString())
+                            && Objects.equals(a.getRoommate() == null ? null : a.getRoommate().getName(),
+                                              b.getRoommate() == null ? null : b.getRoommate().getName());
+                }
+
+                System.out.println(String.format("  n=%d  text parse+build %.0f ms  snapshot write %.0f ms  snapshot load %.0f ms (%.1f MB)  identical=%b",
+                        n, textNanos / 1e6, writeNanos / 1e6, loadNanos / 1e6, Files.size(snapshot) / (1024.0 * 1024.0), same));
+                if (!same) throw new IllegalStateException("Loaded snapshot differs from the parsed roster at n=" + n);
+            } finally {
+                Files.deleteIfExists(roster);
+                Files.deleteIfExists(snapshot);
+            }
+        }
+    }
+
+    // The referral search as originally written, kept as the baseline.
+    private static List<UniversityStudent> legacyReferralPath(StudentGraph graph, UniversityStudent start, String targetCompany) {
+        if (start.getPreviousInternships().contains(targetCompany)) {
+            return new ArrayList<>(Collections.singletonList(start));
+        }
+        Map<UniversityStudent, Integer> dist = new HashMap<>();
+        Map<UniversityStudent, UniversityStudent> prev = new HashMap<>();
+        PriorityQueue<UniversityStudent> minHeap = new PriorityQueue<>(
+                (a, b) -> Integer.compare(dist.getOrDefault(a, Integer.MAX_VALUE), dist.getOrDefault(b, Integer.MAX_VALUE)));
+        for (UniversityStudent s : graph.getAllNodes()) {
+            dist.put(s, Integer.MAX_VALUE);
+            prev.put(s, null);
+        }
+        dist.put(start, 0);
+        minHeap.add(start);
+
+        UniversityStudent target = null;
+        while (!minHeap.isEmpty()) {
+            UniversityStudent current = minHeap.poll();
+            if (current.getPreviousInternships().contains(targetCompany) && !current.equals(start)) {
+                target = current;
+                break;
+            }
+            int currentDist = dist.get(current);
+            for (StudentGraph.Edge edge : graph.getNeighbors(current)) {
+                int newDist = currentDist + Math.max(1, 10 - edge.weight);
+                if (newDist < dist.get(edge.neighbor)) {
+                    dist.put(edge.neighbor, newDist);
+                    prev.put(edge.neighbor, current);
+                    minHeap.add(edge.neighbor);
+                }
+            }
+        }
+
+        List<UniversityStudent> path = new ArrayList<>();
+        for (UniversityStudent current = target; current != null; current = prev.get(current)) {
+            path.add(0, current);
+        }
+        return path;
+    }
+
+    // Returns whether a path costs more than the original's, or is missing where the original found one.
+    // A cheaper path is not an error: the original's PriorityQueue compares students by their current
+    // distance, which it lowers while they are still queued, so the heap order breaks and it can stop
+    // at a target before the cheapest path to it is found.
+    private static boolean costlier(int cost, int legacyCost) {
+        if (legacyCost < 0) return false;
+        return cost < 0 || cost > legacyCost;
+    }
+
+    // Returns the summed inverted weight of a path, or -1 for an empty path.
+    private static int pathCost(StudentGraph graph, List<UniversityStudent> path) {
+        if (path.isEmpty()) return -1;
+        int cost = 0;
+        for (int i = 1; i < path.size(); i++) {
+            int best = Integer.MAX_VALUE;
+            for (StudentGraph.Edge edge : graph.getNeighbors(path.get(i - 1))) {
+                if (edge.neighbor.equals(path.get(i))) best = Math.min(best, Math.max(1, 10 - edge.weight));
+            }
+            cost += best;
+        }
+        return cost;
+    }
+
+    private static String percentiles(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        long p50 = sorted[sorted.length / 2];
+        long p99 = sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * 0.99) - 1)];
+        return String.format("p50=%.2f ms p99=%.2f ms", p50 / 1e6, p99 / 1e6);
+    }
+}
@@ -0,0 +1,286 @@
+import java.util.*;
+
+/**
+ * Inverted index used to prune the pairs that StudentGraph has to score.
+ * Two students can only have a positive connection strength if they share a major,
+ * an age, an internship company, or if one is the other's roommate, so students are
+ * bucketed by each of those keys and only pairs that meet in a bucket are compared.
+ * Only traits whose rule has a positive weight in the ConnectionScorer are bucketed, since
+ * the others can never make a pair's strength positive on their own.
+ * Buckets are keyed by the students' StringDictionary codes rather than by strings, in the
+ * scope of the first student indexed. Strings of students from another scope are looked up in
+ * it; those it lacks are keyed by negative codes from the index's own dictionaries, so
+ * indexing never adds to another cohort's scope.
+ *
+ * An index created empty also supports insert and remove in any id order, and additionally
+ * tracks who names whom as roommate, so StudentGraph can reconnect a single student.
+ */
+public class CandidateIndex {
+    private Map<Integer, IntList> byMajor;
+    private Map<Integer, IntList> byAge;
+    private Map<Integer, IntList> byCompany;
+    private Map<Integer, IntList> byName;
+    private final boolean useMajor;
+    private final boolean useAge;
+    private final boolean useCompany;
+    private final boolean useRoommate;
+    private Map<Integer, IntList> byRoommate;
+    private Map<Integer, Keys> keys;
+    private StringDictionary.Scope scope;
+    // Codes for strings that only students of other scopes use; created when first needed.
+    private StringDictionary.Scope foreign;
+
+    /**
+     * The bucket keys a student was inserted under, so it can be removed after the student changes.
+     */
+    private class Keys {
+        final int major;
+        final int age;
+        final int[] companies;
+        final int name;
+        final int roommate;
+
+        Keys(UniversityStudent s) {
+            major = majorCode(s);
+            age = s.getAge();
+            companies = companyCodes(s);
+            name = nameCode(s);
+            roommate = nameCode(s.getRoommate());
+        }
+    }
+
+    /**
+     * Builds the index over a list of students. A student's id is its position in the list.
+     *
+     * @param students The students to index.
+     * @param scorer   The rules that decide which traits can connect a pair.
+     */
+    public CandidateIndex(List<UniversityStudent> students, ConnectionScorer scorer) {
+        this(scorer, false);
+
+        for (int id = 0; id < students.size(); id++) {
+            add(id, students.get(id));
+        }
+    }
+
+    /**
+     * Constructs an empty index that students are added to with insert and removed from with remove.
+     *
+     * @param scorer The rules that decide which traits can connect a pair.
+     */
+    public CandidateIndex(ConnectionScorer scorer) {
+        this(scorer, true);
+    }
+
+    private CandidateIndex(ConnectionScorer scorer, boolean dynamic) {
+        useMajor = scorer.weight(ConnectionScorer.Rule.SAME_MAJOR) > 0;
+        useAge = scorer.weight(ConnectionScorer.Rule.SAME_AGE) > 0;
+        useCompany = scorer.weight(ConnectionScorer.Rule.SHARED_INTERNSHIP) > 0;
+        useRoommate = scorer.weight(ConnectionScorer.Rule.ROOMMATE) > 0;
+        byMajor = new HashMap<>();
+        byAge = new HashMap<>();
+        byCompany = new HashMap<>();
+        byName = new HashMap<>();
+        if (dynamic) {
+            byRoommate = new HashMap<>();
+            keys = new HashMap<>();
+        }
+    }
+
+    // Returns whether a student's codes can be used as they are, adopting its scope if none is set yet.
+    private boolean local(UniversityStudent s) {
+        if (scope == null) scope = s.getScope();
+        return s.getScope() == scope;
+    }
+
+    // Returns whether a student's codes are its bucket keys, which holds until a foreign string is indexed.
+    private boolean direct(UniversityStudent s) {
+        return local(s) && foreign == null;
+    }
+
+    // Returns the bucket key of a string: -1 for null, -2 minus its code if a foreign student's string
+    // was keyed first, otherwise its code in the index's scope, or a new foreign key if it has none.
+    private int key(StringDictionary home, StringDictionary other, String value) {
+        if (value == null) return -1;
+        int code = other.code(value);
+        if (code != -1) return -2 - code;
+        code = home.code(value);
+        return code != -1 ? code : -2 - other.encode(value);
+    }
+
+    private StringDictionary.Scope foreign() {
+        if (foreign == null) foreign = new StringDictionary.Scope();
+        return foreign;
+    }
+
+    private int majorCode(UniversityStudent s) {
+        return direct(s) ? s.getMajorCode() : key(scope.majors, foreign().majors, s.getMajor());
+    }
+
+    // Returns the student's name key, or -1 for no student.
+    private int nameCode(UniversityStudent s) {
+        if (s == null) return -1;
+        return direct(s) ? s.getNameCode() : key(scope.names, foreign().names, s.getName());
+    }
+
+    // Returns the student's company keys, sorted ascending.
+    private int[] companyCodes(UniversityStudent s) {
+        if (direct(s)) return s.getInternshipCodes();
+        List<String> companies = s.getPreviousInternships();
+        int[] codes = new int[companies.size()];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = key(scope.companies, foreign().companies, companies.get(i));
+        }
+        Arrays.sort(codes);
+        return codes;
+    }
+
+    // Appends a student to every bucket it belongs to. Ids must be added in ascending order.
+    private void add(int id, UniversityStudent s) {
+        if (useMajor && majorCode(s) != -1) append(byMajor, majorCode(s), id);
+        if (useAge) append(byAge, s.getAge(), id);
+        if (useCompany) {
+            for (int company : companyCodes(s)) {
+                append(byCompany, company, id);
+            }
+        }
+        if (useRoommate && nameCode(s) != -1) append(byName, nameCode(s), id);
+    }
+
+    private static <K> void append(Map<K, IntList> map, K key, int id) {
+        IntList list = map.get(key);
+        if (list == null) {
+            list = new IntList();
+            map.put(key, list);
+        }
+        // A student listing the same company twice only needs one bucket entry.
+        if (list.isEmpty() || list.get(list.size() - 1) != id) list.add(id);
+    }
+
+    /**
+     * Adds a student to an index created with CandidateIndex(ConnectionScorer). Ids may arrive in any order.
+     *
+     * @param id The student's id; must not already be in the index.
+     * @param s  The student.
+     */
+    public void insert(int id, UniversityStudent s) {
+        Keys k = new Keys(s);
+        keys.put(id, k);
+
+        if (useMajor && k.major != -1) bucket(byMajor, k.major).insertSorted(id);
+        if (useAge) bucket(byAge, k.age).insertSorted(id);
+        if (useCompany) {
+            for (int c = 0; c < k.companies.length; c++) {
+                if (c == 0 || k.companies[c] != k.companies[c - 1]) bucket(byCompany, k.companies[c]).insertSorted(id);
+            }
+        }
+        if (useRoommate) {
+            if (k.name != -1) bucket(byName, k.name).insertSorted(id);
+            if (k.roommate != -1) bucket(byRoommate, k.roommate).insertSorted(id);
+        }
+    }
+
+    /**
+     * Removes a student from the buckets it was inserted under, even if the student has changed since.
+     *
+     * @param id The student's id.
+     */
+    public void remove(int id) {
+        Keys k = keys.remove(id);
+        if (k == null) return;
+
+        if (useMajor && k.major != -1) byMajor.get(k.major).removeSorted(id);
+        if (useAge) byAge.get(k.age).removeSorted(id);
+        if (useCompany) {
+            for (int c = 0; c < k.companies.length; c++) {
+                if (c == 0 || k.companies[c] != k.companies[c - 1]) byCompany.get(k.companies[c]).removeSorted(id);
+            }
+        }
+        if (useRoommate) {
+            if (k.name != -1) byName.get(k.name).removeSorted(id);
+            if (k.roommate != -1) byRoommate.get(k.roommate).removeSorted(id);
+        }
+    }
+
+    private static IntList bucket(Map<Integer, IntList> map, int key) {
+        IntList list = map.get(key);
+        if (list == null) {
+            list = new IntList();
+            map.put(key, list);
+        }
+        return list;
+    }
+
+    /**
+     * Collects every other inserted student that can have a positive strength with the given one
+     * in either direction: shared buckets, the student's roommate, and students naming it as theirs.
+     * The result is written to out in ascending order without duplicates.
+     *
+     * @param id  The id the student was inserted under.
+     * @param s   The student.
+     * @param out The list that receives the candidate ids. It is cleared first.
+     */
+    public void collectAll(int id, UniversityStudent s, IntList out) {
+        out.clear();
+
+        if (useMajor && majorCode(s) != -1) addAll(byMajor.get(majorCode(s)), out);
+        if (useAge) addAll(byAge.get(s.getAge()), out);
+        if (useCompany) {
+            for (int company : companyCodes(s)) {
+                addAll(byCompany.get(company), out);
+            }
+        }
+        if (useRoommate) {
+            if (nameCode(s.getRoommate()) != -1) addAll(byName.get(nameCode(s.getRoommate())), out);
+            if (nameCode(s) != -1) addAll(byRoommate.get(nameCode(s)), out);
+        }
+
+        out.sortDistinct();
+        out.removeSorted(id);
+    }
+
+    private static void addAll(IntList bucket, IntList out) {
+        if (bucket == null) return;
+        for (int k = 0; k < bucket.size(); k++) {
+            out.add(bucket.get(k));
+        }
+    }
+
+    /**
+     * Collects every student id greater than the given id that shares a bucket with the student.
+     * The result is written to out in ascending order without duplicates.
+     *
+     * @param id   The id of the student whose candidates are requested.
+     * @param s    The student with that id.
+     * @param mark Scratch array sized to the number of students; must hold no value equal to id + 1.
+     * @param out  The list that receives the candidate ids. It is cleared first.
+     */
+    public void collect(int id, UniversityStudent s, int[] mark, IntList out) {
+        out.clear();
+        int stamp = id + 1;
+
+        if (useMajor && majorCode(s) != -1) collectFrom(byMajor.get(majorCode(s)), id, stamp, mark, out);
+        if (useAge) collectFrom(byAge.get(s.getAge()), id, stamp, mark, out);
+        if (useCompany) {
+            for (int company : companyCodes(s)) {
+                collectFrom(byCompany.get(company), id, stamp, mark, out);
+            }
+        }
+        if (useRoommate && nameCode(s.getRoommate()) != -1) {
+            collectFrom(byName.get(nameCode(s.getRoommate())), id, stamp, mark, out);
+        }
+
+        out.sort();
+    }
+
+    private static void collectFrom(IntList bucket, int id, int stamp, int[] mark, IntList out) {
+        if (bucket == null) return;
+        for (int k = bucket.firstGreaterThan(id); k < bucket.size(); k++) {
+            int other = bucket.get(k);
+            if (mark[other] != stamp) {
+                mark[other] = stamp;
+                out.add(other);
+            }
+        }
+    }
+}
@@ -0,0 +1,388 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Append-only chat storage. Every message is written once, as a length-prefixed UTF-8 record,
+ * to the current segment: a fixed-size file mapped into memory. Each student has an index of
+ * the offsets of the messages they sent or received, so a conversation can be read as a page
+ * without touching anyone else's messages.
+ *
+ * Appends do not share a lock. A writer reserves its record's bytes in the current segment
+ * with a compare-and-set on the segment's position; only starting a new segment is serialized.
+ * The reservation, the copy and both index updates happen under StudentLocks.withPair for the
+ * two students, so messages of unrelated pairs proceed in parallel, while each index stays in
+ * offset order and both students of a pair see their messages in the same order.
+ *
+ * Retention is by size: once more than maxSegments segments exist, the oldest one is deleted.
+ * Indexes drop offsets that point into deleted segments whenever they are used, and the thread
+ * that deleted a segment then sweeps every index, so heap use stays proportional to the
+ * retained messages rather than to all traffic ever sent. There is no compaction: a record is
+ * never edited or removed on its own, so every record in a retained segment is still referenced
+ * and there is nothing to reclaim short of expiring the whole segment.
+ *
+ * Offsets are (segment number &lt;&lt; 32) | position, so they increase in append order.
+ *
+ * A log holds a lock on an owner.lock file in its directory until it is closed. The shared log
+ * lives in a fresh chatlog* directory under the chatlog.dir system property, or the temporary
+ * directory if that is unset, is closed by a shutdown hook, and on creation deletes any sibling
+ * chatlog* directory whose lock is free, which is what a crashed process leaves behind.
+ */
+public class ChatLog implements Closeable {
+    public static final int DEFAULT_SEGMENT_BYTES = 8 << 20;
+    public static final int DEFAULT_MAX_SEGMENTS = 16;
+    public static final String DIRECTORY_PROPERTY = "chatlog.dir";
+    private static final String LOCK_FILE = "owner.lock";
+
+    private static volatile ChatLog shared;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final FileChannel lockChannel;
+    private final Map<Integer, Segment> segments = new ConcurrentHashMap<>();
+    private final Map<Integer, OffsetIndex> indexes = new ConcurrentHashMap<>();
+    private final Object rollLock = new Object();
+    private volatile Segment current;
+    // The number of the oldest retained segment; offsets below firstSegment << 32 are gone.
+    private volatile int firstSegment = 0;
+
+    /**
+     * One mapped segment file. Writers claim disjoint byte ranges through position and write
+     * them through their own duplicates of the buffer.
+     */
+    private static class Segment {
+        final int number;
+        final Path file;
+        final MappedByteBuffer buffer;
+        final AtomicInteger position = new AtomicInteger();
+
+        Segment(int number, Path file, MappedByteBuffer buffer) {
+            this.number = number;
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        // Claims length bytes, returning where they start, or -1 if the segment is too full.
+        int reserve(int length) {
+            while (true) {
+                int at = position.get();
+                if (at + length > buffer.capacity()) return -1;
+                if (position.compareAndSet(at, at + length)) return at;
+            }
+        }
+    }
+
+    /**
+     * Growable array of one student's message offsets, oldest first. Guarded by the owner's
+     * StudentLocks stripe. Keeps only the owner's chat id and stripe, so an index never holds
+     * a student, or the dictionary scope behind it, in memory.
+     */
+    private static class OffsetIndex {
+        final int chatId;
+        final int stripe;
+        long[] offsets = new long[8];
+        int start;
+        int end;
+
+        OffsetIndex(UniversityStudent owner) {
+            this.chatId = owner.getChatId();
+            this.stripe = StudentLocks.stripe(owner);
+        }
+
+        void add(long offset) {
+            if (end == offsets.length) {
+                if (start > 0) {
+                    // Reuse the space freed by retention before growing.
+                    System.arraycopy(offsets, start, offsets, 0, end - start);
+                    end -= start;
+                    start = 0;
+                }
+                if (end == offsets.length) offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[end++] = offset;
+        }
+
+        int size() {
+            return end - start;
+        }
+
+        // Drops offsets below the given one and shrinks the array once most of it is unused.
+        void trimBefore(long minOffset) {
+            while (start < end && offsets[start] < minOffset) start++;
+            if (size() < offsets.length / 4 && offsets.length > 8) {
+                offsets = Arrays.copyOfRange(offsets, start, start + Math.max(8, size() * 2));
+                end -= start;
+                start = 0;
+            }
+        }
+    }
+
+    /**
+     * Opens a new, empty log in a directory.
+     *
+     * @param directory    Where the segment files are created.
+     * @param segmentBytes The size of each segment file; also the largest message that fits.
+     * @param maxSegments  How many segments to retain before the oldest is deleted.
+     * @throws IOException If the first segment cannot be created, or another log holds the directory.
+     */
+    public ChatLog(Path directory, int segmentBytes, int maxSegments) throws IOException {
+        if (segmentBytes < 64 || maxSegments < 1) {
+            throw new IllegalArgumentException("Segments must hold at least 64 bytes and at least one must be kept.");
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = maxSegments;
+        Files.createDirectories(directory);
+        this.lockChannel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            if (tryLock(lockChannel) == null) throw new IOException("Chat log directory " + directory + " is in use.");
+            synchronized (rollLock) {
+                roll(null);
+            }
+        } catch (IOException | RuntimeException e) {
+            lockChannel.close();
+            throw e;
+        }
+    }
+
+    // Returns the lock, or null if this or another process already holds it.
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the process-wide log used by UniversityStudent and ChatThread, creating it with the
+     * default sizes on first use in a new directory under chatlog.dir or the temporary directory.
+     *
+     * @return The shared ChatLog.
+     */
+    public static ChatLog shared() {
+        ChatLog log = shared;
+        if (log == null) {
+            synchronized (ChatLog.class) {
+                log = shared;
+                if (log == null) {
+                    try {
+                        String configured = System.getProperty(DIRECTORY_PROPERTY);
+                        Path parent = Paths.get(configured != null ? configured : System.getProperty("java.io.tmpdir"));
+                        Files.createDirectories(parent);
+                        deleteAbandoned(parent);
+                        log = new ChatLog(Files.createTempDirectory(parent, "chatlog"), DEFAULT_SEGMENT_BYTES, DEFAULT_MAX_SEGMENTS);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Could not create the chat log", e);
+                    }
+                    ChatLog closing = log;
+                    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                        try {
+                            closing.close();
+                        } catch (IOException e) {
+                            // Left for the next process to delete as abandoned.
+                        }
+                    }));
+                    shared = log;
+                }
+            }
+        }
+        return log;
+    }
+
+    // Deletes the chatlog* directories under parent that no live log holds the lock of.
+    private static void deleteAbandoned(Path parent) throws IOException {
+        try (DirectoryStream<Path> candidates = Files.newDirectoryStream(parent, "chatlog*")) {
+            for (Path candidate : candidates) {
+                Path lockFile = candidate.resolve(LOCK_FILE);
+                if (!Files.isDirectory(candidate) || !Files.exists(lockFile)) continue;
+                try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.WRITE)) {
+                    if (tryLock(channel) == null) continue;
+                    try (DirectoryStream<Path> files = Files.newDirectoryStream(candidate)) {
+                        for (Path file : files) Files.deleteIfExists(file);
+                    }
+                } catch (IOException e) {
+                    // Another process may be deleting it too; whichever one is left finishes later.
+                    continue;
+                }
+                Files.deleteIfExists(candidate);
+            }
+        }
+    }
+
+    /**
+     * Starts a new segment unless another writer already replaced the full one, and deletes the
+     * oldest segment if too many are retained. Called with rollLock held.
+     *
+     * @param full The segment the caller found full, or null for the first segment.
+     * @return true if a segment was deleted, so the indexes should be swept.
+     */
+    private boolean roll(Segment full) throws IOException {
+        if (current != full) return false;
+
+        int number = full == null ? 0 : full.number + 1;
+        Path file = directory.resolve(String.format("segment-%08d.log", number));
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+        Segment segment = new Segment(number, file, buffer);
+        segments.put(number, segment);
+        current = segment;
+
+        if (segments.size() <= maxSegments) return false;
+        Segment expired = segments.remove(firstSegment);
+        firstSegment++;
+        // Readers that already resolved the segment keep its mapping; the file itself can go.
+        Files.deleteIfExists(expired.file);
+        return true;
+    }
+
+    /**
+     * Appends one message and records it in the sender's and the receiver's indexes.
+     * Both students therefore see the messages between them in the same order.
+     *
+     * @param sender   The student who sent the message.
+     * @param receiver The student who received it; may be the sender for a note to self.
+     * @param line     The formatted chat line.
+     * @return The offset of the message.
+     * @throws IllegalArgumentException If the message does not fit in one segment.
+     */
+    public long append(UniversityStudent sender, UniversityStudent receiver, String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        int length = bytes.length + Integer.BYTES;
+        if (length > segmentBytes) {
+            throw new IllegalArgumentException("Chat message of " + bytes.length + " bytes does not fit in a segment.");
+        }
+
+        long[] offset = new long[1];
+        boolean[] expired = new boolean[1];
+        StudentLocks.withPair(sender, receiver, () -> {
+            Segment segment = current;
+            int at;
+            while ((at = segment.reserve(length)) < 0) {
+                synchronized (rollLock) {
+                    try {
+                        expired[0] |= roll(segment);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Could not roll the chat log", e);
+                    }
+                }
+                segment = current;
+            }
+            ByteBuffer view = segment.buffer.duplicate();
+            view.position(at);
+            view.putInt(bytes.length);
+            view.put(bytes);
+
+            offset[0] = ((long) segment.number << 32) | at;
+            long minOffset = (long) firstSegment << 32;
+            index(sender, minOffset).add(offset[0]);
+            if (receiver.getChatId() != sender.getChatId()) index(receiver, minOffset).add(offset[0]);
+        });
+        // Swept after the pair's locks are released, since the sweep takes every stripe in turn.
+        if (expired[0]) sweep();
+        return offset[0];
+    }
+
+    // Returns a student's index trimmed to the retained segments. Called under the student's stripe.
+    private OffsetIndex index(UniversityStudent student, long minOffset) {
+        OffsetIndex index = indexes.computeIfAbsent(student.getChatId(), id -> new OffsetIndex(student));
+        index.trimBefore(minOffset);
+        return index;
+    }
+
+    // Trims every index to the retained segments, dropping the ones left empty.
+    private void sweep() {
+        for (OffsetIndex index : indexes.values()) {
+            StudentLocks.withStripe(index.stripe, () -> {
+                index.trimBefore((long) firstSegment << 32);
+                if (index.size() == 0) indexes.remove(index.chatId, index);
+            });
+        }
+    }
+
+    // Returns how many retained messages a student sent or received.
+    public int count(UniversityStudent student) {
+        int[] count = new int[1];
+        StudentLocks.withPair(student, student, () -> {
+            OffsetIndex index = indexes.get(student.getChatId());
+            if (index != null) {
+                index.trimBefore((long) firstSegment << 32);
+                count[0] = index.size();
+            }
+        });
+        return count[0];
+    }
+
+    /**
+     * Reads a page of a student's retained messages, oldest first.
+     *
+     * @param student The student.
+     * @param from    The position of the first message in the student's retained history.
+     * @param limit   The maximum number of messages to return.
+     * @return The messages, possibly fewer than limit or none.
+     */
+    public List<String> read(UniversityStudent student, int from, int limit) {
+        // Only the offsets are copied under the lock; the records they name are never rewritten.
+        long[][] page = new long[1][];
+        StudentLocks.withPair(student, student, () -> {
+            OffsetIndex index = indexes.get(student.getChatId());
+            if (index == null) return;
+            index.trimBefore((long) firstSegment << 32);
+            if (from >= index.size() || limit <= 0) return;
+            int first = Math.max(0, from);
+            int to = (int) Math.min(index.size(), (long) first + limit);
+            page[0] = Arrays.copyOfRange(index.offsets, index.start + first, index.start + to);
+        });
+        if (page[0] == null) return new ArrayList<>();
+
+        List<String> lines = new ArrayList<>(page[0].length);
+        Segment segment = null;
+        for (long offset : page[0]) {
+            int number = (int) (offset >>> 32);
+            if (segment == null || segment.number != number) segment = segments.get(number);
+            // Expired since the offsets were copied.
+            if (segment == null) continue;
+
+            ByteBuffer view = segment.buffer.duplicate();
+            view.position((int) offset);
+            byte[] bytes = new byte[view.getInt()];
+            view.get(bytes);
+            lines.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return lines;
+    }
+
+    // Returns the number of segment files currently retained.
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Deletes every segment file and the directory, and releases its lock. The log must not be
+     * used afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (rollLock) {
+            for (Segment segment : segments.values()) {
+                Files.deleteIfExists(segment.file);
+            }
+            segments.clear();
+            indexes.clear();
+            lockChannel.close();
+            Files.deleteIfExists(directory.resolve(LOCK_FILE));
+            Files.deleteIfExists(directory);
+        }
+    }
+}
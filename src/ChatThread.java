@@ -1,15 +1,12 @@
-import java.util.concurrent.Semaphore;
-
 /**
  * Represents a thread capable of simulating a chat interaction between two students.
- * This class handles the concurrent updating of chat histories.
+ * This class handles the concurrent updating of chat histories. Each message is appended once
+ * to the shared ChatLog, which indexes it under both students.
  */
 public class ChatThread implements Runnable {
     private UniversityStudent sender;
     private UniversityStudent receiver;
     private String message;
-    
-    private static final Semaphore semaphore = new Semaphore(1);
 
     /**
      * Constructs a new ChatThread.
@@ -31,18 +28,23 @@ public class ChatThread implements Runnable {
      */
     @Override
     public void run() {
-        try {
-            semaphore.acquire();
-            
-            String chatMessage = sender.getName() + " to " + receiver.getName() + ": " + message;
-            sender.addChatMessage(chatMessage);
-            receiver.addChatMessage(chatMessage);
-            
-            System.out.println(chatMessage);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        } finally {
-            semaphore.release();
-        }
+        String chatMessage = send(sender, receiver, message);
+        // Printed after the append returns, so slow console output never blocks other chats.
+        System.out.println(chatMessage);
+    }
+
+    /**
+     * Appends a message to the shared ChatLog once, recorded under both students in one step,
+     * so two students always see the messages between them in the same order. Does not print.
+     *
+     * @param sender   The student sending the message.
+     * @param receiver The student receiving the message.
+     * @param message  The content of the message.
+     * @return The chat line that was recorded.
+     */
+    public static String send(UniversityStudent sender, UniversityStudent receiver, String message) {
+        String chatMessage = sender.getName() + " to " + receiver.getName() + ": " + message;
+        ChatLog.shared().append(sender, receiver, chatMessage);
+        return chatMessage;
     }
 }
@@ -0,0 +1,284 @@
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Immutable, compressed sparse row (CSR) form of the student network.
+ * Students are given dense int ids, and the edges of student i are stored in
+ * neighbors[offsets[i]] .. neighbors[offsets[i + 1] - 1] with matching entries in weights.
+ * Offers the same read API as StudentGraph, plus primitive accessors that let
+ * algorithms walk the graph without allocating. The rows are held in buffers, so a graph
+ * built in memory and one mapped from a snapshot file are read the same way.
+ */
+public class CompactStudentGraph {
+    private final UniversityStudent[] students;
+    private final Map<String, Integer> ids;
+    private final IntBuffer offsets;
+    private final IntBuffer neighbors;
+    private final ByteBuffer weights;
+    private volatile CompanyIndex companyIndex;
+    private volatile ReferralDistanceFields distanceFields;
+    private final ConnectionScorer scorer;
+
+    /**
+     * Builds the compact graph directly from a list of students, without creating Edge objects.
+     * Student ids follow list order, and each student's edges are in the same order as
+     * in a StudentGraph built from the same list.
+     *
+     * @param students A list of UniversityStudent objects with unique names.
+     * @throws IllegalArgumentException If two students share a name.
+     */
+    public CompactStudentGraph(List<UniversityStudent> students) {
+        this(students, ConnectionScorer.DEFAULT);
+    }
+
+    /**
+     * Builds the compact graph directly from a list of students, scoring pairs with the given rules.
+     *
+     * @param students A list of UniversityStudent objects with unique names.
+     * @param scorer   The connection-strength rules.
+     * @throws IllegalArgumentException If two students share a name.
+     */
+    public CompactStudentGraph(List<UniversityStudent> students, ConnectionScorer scorer) {
+        this.scorer = scorer;
+        this.students = students.toArray(new UniversityStudent[0]);
+        this.ids = indexNames(this.students);
+        int n = this.students.length;
+
+        StudentGraph.EdgeBuffer[] buffers = StudentGraph.scanEdges(students, ForkJoinPool.commonPool(), scorer);
+
+        int[] degree = new int[n];
+        for (StudentGraph.EdgeBuffer buffer : buffers) {
+            for (int k = 0; k < buffer.size; k++) {
+                degree[buffer.source[k]]++;
+                degree[buffer.target[k]]++;
+            }
+        }
+        int[] offsets = prefixSums(degree);
+        int[] neighbors = new int[offsets[n]];
+        byte[] weights = new byte[offsets[n]];
+
+        // Rows arrive in ascending order, so every student receives its lower-id neighbours
+        // before its own row is replayed, which reproduces the StudentGraph edge order.
+        int[] cursor = Arrays.copyOf(offsets, n);
+        for (StudentGraph.EdgeBuffer buffer : buffers) {
+            for (int k = 0; k < buffer.size; k++) {
+                int i = buffer.source[k];
+                int j = buffer.target[k];
+                byte w = toByte(buffer.weight[k]);
+                neighbors[cursor[i]] = j;
+                weights[cursor[i]++] = w;
+                neighbors[cursor[j]] = i;
+                weights[cursor[j]++] = w;
+            }
+        }
+        this.offsets = IntBuffer.wrap(offsets);
+        this.neighbors = IntBuffer.wrap(neighbors);
+        this.weights = ByteBuffer.wrap(weights);
+    }
+
+    /**
+     * Builds the compact form of an existing graph. Ids follow the order of graph.getAllNodes().
+     *
+     * @param graph The graph to compress.
+     */
+    public CompactStudentGraph(StudentGraph graph) {
+        this.scorer = graph.scorer();
+        this.students = graph.getAllNodes().toArray(new UniversityStudent[0]);
+        this.ids = indexNames(this.students);
+        int n = this.students.length;
+
+        int[] degree = new int[n];
+        for (int i = 0; i < n; i++) {
+            degree[i] = graph.getNeighbors(students[i]).size();
+        }
+        int[] offsets = prefixSums(degree);
+        int[] neighbors = new int[offsets[n]];
+        byte[] weights = new byte[offsets[n]];
+
+        for (int i = 0; i < n; i++) {
+            int e = offsets[i];
+            for (StudentGraph.Edge edge : graph.getNeighbors(students[i])) {
+                neighbors[e] = ids.get(edge.neighbor.getName());
+                weights[e++] = toByte(edge.weight);
+            }
+        }
+        this.offsets = IntBuffer.wrap(offsets);
+        this.neighbors = IntBuffer.wrap(neighbors);
+        this.weights = ByteBuffer.wrap(weights);
+    }
+
+    /**
+     * Wraps CSR buffers that were built elsewhere, such as the columns of a mapped snapshot.
+     * The buffers are read in place with absolute gets, from index 0 to their limit, and must
+     * not be modified afterwards.
+     *
+     * @param students  The students, in id order, with unique names.
+     * @param offsets   The edge offsets, students.size() + 1 of them.
+     * @param neighbors The neighbour id of every edge slot.
+     * @param weights   The connection strength of every edge slot.
+     * @param scorer    The rules the weights were scored with.
+     * @throws IllegalArgumentException If the buffers do not describe a graph over the students.
+     */
+    public CompactStudentGraph(List<UniversityStudent> students, IntBuffer offsets, IntBuffer neighbors, ByteBuffer weights, ConnectionScorer scorer) {
+        this.scorer = scorer;
+        this.students = students.toArray(new UniversityStudent[0]);
+        this.ids = indexNames(this.students);
+        int n = this.students.length;
+
+        if (offsets.limit() != n + 1 || offsets.get(0) != 0 || offsets.get(n) != neighbors.limit() || neighbors.limit() != weights.limit()) {
+            throw new IllegalArgumentException("Edge buffers do not match " + n + " students.");
+        }
+        for (int i = 0; i < n; i++) {
+            if (offsets.get(i) > offsets.get(i + 1)) throw new IllegalArgumentException("Edge offsets are not ascending at " + i + ".");
+        }
+        for (int e = 0; e < neighbors.limit(); e++) {
+            int neighbor = neighbors.get(e);
+            if (neighbor < 0 || neighbor >= n) throw new IllegalArgumentException("Neighbour id " + neighbor + " is out of range.");
+        }
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+        this.weights = weights;
+    }
+
+    private static Map<String, Integer> indexNames(UniversityStudent[] students) {
+        Map<String, Integer> ids = new HashMap<>();
+        for (int i = 0; i < students.length; i++) {
+            if (ids.put(students[i].getName(), i) != null) {
+                throw new IllegalArgumentException("Duplicate student name: " + students[i].getName());
+            }
+        }
+        return ids;
+    }
+
+    private static int[] prefixSums(int[] degree) {
+        int[] offsets = new int[degree.length + 1];
+        for (int i = 0; i < degree.length; i++) {
+            offsets[i + 1] = offsets[i] + degree[i];
+        }
+        return offsets;
+    }
+
+    private static byte toByte(int weight) {
+        if (weight < 0 || weight > 255) {
+            throw new IllegalStateException("Connection strength " + weight + " does not fit in a compact graph.");
+        }
+        return (byte) weight;
+    }
+
+    /**
+     * Returns the company-to-holders index over this graph's ids, building it on first use.
+     *
+     * @return The CompanyIndex for this graph.
+     */
+    public CompanyIndex companyIndex() {
+        CompanyIndex index = companyIndex;
+        if (index == null) {
+            index = new CompanyIndex(this);
+            companyIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the cache of per-company referral distance fields for this graph.
+     *
+     * @return The ReferralDistanceFields cache, created on first use with the default budget.
+     */
+    public synchronized ReferralDistanceFields distanceFields() {
+        if (distanceFields == null) {
+            distanceFields = new ReferralDistanceFields(this, ReferralDistanceFields.DEFAULT_BUDGET_BYTES);
+        }
+        return distanceFields;
+    }
+
+    // Returns the connection-strength rules, which also define the referral cost of each edge.
+    public ConnectionScorer scorer() {
+        return scorer;
+    }
+
+    // Returns the number of students (nodes) in the graph.
+    public int size() {
+        return students.length;
+    }
+
+    // Returns the number of undirected edges in the graph.
+    public int edgeCount() {
+        return neighbors.limit() / 2;
+    }
+
+    // Returns the dense id of a student, or -1 if the student is not in the graph.
+    public int idOf(UniversityStudent student) {
+        return student == null ? -1 : idOf(student.getName());
+    }
+
+    // Returns the dense id of the student with the given name, or -1 if there is none.
+    public int idOf(String name) {
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    // Returns the student with the given dense id.
+    public UniversityStudent studentAt(int id) {
+        return students[id];
+    }
+
+    // Returns the number of edges of a student.
+    public int degree(int id) {
+        return offsets.get(id + 1) - offsets.get(id);
+    }
+
+    // Returns the first edge slot of a student; pair with edgeEnd, neighborAt and weightAt.
+    public int edgeStart(int id) {
+        return offsets.get(id);
+    }
+
+    // Returns one past the last edge slot of a student.
+    public int edgeEnd(int id) {
+        return offsets.get(id + 1);
+    }
+
+    // Returns the neighbour id stored in an edge slot.
+    public int neighborAt(int edge) {
+        return neighbors.get(edge);
+    }
+
+    // Returns the connection strength stored in an edge slot.
+    public int weightAt(int edge) {
+        return weights.get(edge) & 0xFF;
+    }
+
+    /**
+     * Retrieves the list of edges (neighbors) for a specific student.
+     * The Edge objects are created on each call; use the primitive accessors on hot paths.
+     *
+     * @param student The student whose neighbors are being requested.
+     * @return A list of Edge objects connecting the student to others.
+     */
+    public List<StudentGraph.Edge> getNeighbors(UniversityStudent student) {
+        int id = idOf(student);
+        if (id < 0) return new ArrayList<>();
+
+        List<StudentGraph.Edge> edges = new ArrayList<>(degree(id));
+        for (int e = edgeStart(id); e < edgeEnd(id); e++) {
+            edges.add(new StudentGraph.Edge(students[neighborAt(e)], weightAt(e)));
+        }
+        return edges;
+    }
+
+    /**
+     * Returns all students (nodes) in the graph, in id order.
+     *
+     * @return A list of all UniversityStudent objects in the graph.
+     */
+    public List<UniversityStudent> getAllNodes() {
+        return new ArrayList<>(Arrays.asList(students));
+    }
+
+    // Returns a student by name.
+    public UniversityStudent getStudent(String name) {
+        int id = idOf(name);
+        return id < 0 ? null : students[id];
+    }
+}
@@ -0,0 +1,79 @@
+import java.util.*;
+
+/**
+ * Inverted index from internship companies to the students who interned there.
+ * Companies get dense ids, and the holders of each company are kept as a bitset over the
+ * dense student ids of a CompactStudentGraph, so "has this student interned at X" is a
+ * single bit test and unknown companies can be rejected before any search starts.
+ */
+public class CompanyIndex {
+    private final Map<String, Integer> companyIds;
+    private final List<String> companies;
+    private final List<BitSet> holders;
+
+    /**
+     * Builds the index over every student of a compact graph.
+     *
+     * @param graph The graph whose dense student ids the bitsets refer to.
+     */
+    public CompanyIndex(CompactStudentGraph graph) {
+        companyIds = new HashMap<>();
+        companies = new ArrayList<>();
+        holders = new ArrayList<>();
+
+        for (int id = 0; id < graph.size(); id++) {
+            for (String company : graph.studentAt(id).getPreviousInternships()) {
+                Integer companyId = companyIds.get(company);
+                if (companyId == null) {
+                    companyId = companies.size();
+                    companyIds.put(company, companyId);
+                    companies.add(company);
+                    holders.add(new BitSet(graph.size()));
+                }
+                holders.get(companyId).set(id);
+            }
+        }
+    }
+
+    // Returns the number of distinct companies in the index.
+    public int companyCount() {
+        return companies.size();
+    }
+
+    // Returns the dense id of a company, or -1 if no student has interned there.
+    public int companyId(String company) {
+        Integer id = companyIds.get(company);
+        return id == null ? -1 : id;
+    }
+
+    // Returns the company name for a dense company id.
+    public String companyName(int companyId) {
+        return companies.get(companyId);
+    }
+
+    // Returns true if the student with the given dense id interned at the company.
+    public boolean holds(int companyId, int studentId) {
+        return holders.get(companyId).get(studentId);
+    }
+
+    // Returns the number of students who interned at the company.
+    public int holderCount(int companyId) {
+        return holders.get(companyId).cardinality();
+    }
+
+    // Returns the next holder id at or after fromStudentId, or -1 if there is none.
+    public int nextHolder(int companyId, int fromStudentId) {
+        return holders.get(companyId).nextSetBit(fromStudentId);
+    }
+
+    /**
+     * Returns a copy of the holders of a company as a bitset over dense student ids.
+     *
+     * @param company The company name.
+     * @return The holders, or an empty bitset if nobody interned there.
+     */
+    public BitSet holdersOf(String company) {
+        int id = companyId(company);
+        return id < 0 ? new BitSet() : (BitSet) holders.get(id).clone();
+    }
+}
@@ -0,0 +1,151 @@
+import java.util.*;
+
+/**
+ * Connection-strength strategy compiled from a declarative rule set.
+ * A rule set gives a weight to each kind of shared trait plus the base used to turn a
+ * strength into a referral cost. compile() resolves it once into plain int fields and two
+ * flags, so score() does no map lookups and skips the roommate check and the internship
+ * intersection when those rules have weight 0. The major and age tests always run; with
+ * weight 0 they add nothing.
+ *
+ * Weights must fit in 0..255, the range a CompactStudentGraph stores per edge.
+ *
+ * UniversityStudent.calculateConnectionStrength delegates to the DEFAULT scorer.
+ */
+public class ConnectionScorer {
+    /**
+     * The traits a rule set can weight.
+     * ROOMMATE and SHARED_INTERNSHIP follow calculateConnectionStrength: the roommate rule looks at
+     * the first student's roommate, and the internship weight is added once per shared company.
+     */
+    public enum Rule {
+        ROOMMATE,
+        SHARED_INTERNSHIP,
+        SAME_MAJOR,
+        SAME_AGE
+    }
+
+    public static final int DEFAULT_REFERRAL_BASE = 10;
+    public static final ConnectionScorer DEFAULT = parse("roommate=4, internship=3, major=2, age=1");
+
+    private final Map<Rule, Integer> rules;
+    private final int roommateWeight;
+    private final int internshipWeight;
+    private final int majorWeight;
+    private final int ageWeight;
+    private final int referralBase;
+    private final boolean scoresRoommate;
+    private final boolean scoresInternships;
+
+    private ConnectionScorer(Map<Rule, Integer> rules, int referralBase) {
+        this.rules = Collections.unmodifiableMap(new EnumMap<>(rules));
+        this.roommateWeight = weight(rules, Rule.ROOMMATE);
+        this.internshipWeight = weight(rules, Rule.SHARED_INTERNSHIP);
+        this.majorWeight = weight(rules, Rule.SAME_MAJOR);
+        this.ageWeight = weight(rules, Rule.SAME_AGE);
+        this.referralBase = referralBase;
+        this.scoresRoommate = roommateWeight != 0;
+        this.scoresInternships = internshipWeight != 0;
+    }
+
+    private static int weight(Map<Rule, Integer> rules, Rule rule) {
+        Integer weight = rules.get(rule);
+        return weight == null ? 0 : weight;
+    }
+
+    /**
+     * Compiles a rule set into a scorer. Rules missing from the map have weight 0.
+     *
+     * @param rules        The weight of each rule.
+     * @param referralBase Referral cost of an edge is max(1, referralBase - strength).
+     * @return The compiled scorer.
+     * @throws IllegalArgumentException If a weight is outside 0..255.
+     */
+    public static ConnectionScorer compile(Map<Rule, Integer> rules, int referralBase) {
+        for (Map.Entry<Rule, Integer> rule : rules.entrySet()) {
+            int weight = rule.getValue() == null ? 0 : rule.getValue();
+            if (weight < 0 || weight > 255) {
+                throw new IllegalArgumentException("Weight " + weight + " for " + rule.getKey() + " is outside 0..255.");
+            }
+        }
+        return new ConnectionScorer(rules, referralBase);
+    }
+
+    /**
+     * Compiles a rule set written as comma-separated key=weight pairs, for example
+     * "roommate=4, internship=3, major=2, age=1, referralBase=10".
+     * Keys are roommate, internship, major, age and referralBase; omitted rules have weight 0.
+     *
+     * @param spec The rule set.
+     * @return The compiled scorer.
+     * @throws IllegalArgumentException If a key is unknown or a weight is not an integer in 0..255.
+     */
+    public static ConnectionScorer parse(String spec) {
+        Map<Rule, Integer> rules = new EnumMap<>(Rule.class);
+        int referralBase = DEFAULT_REFERRAL_BASE;
+
+        for (String entry : spec.split(",")) {
+            if (entry.trim().isEmpty()) continue;
+            String[] parts = entry.split("=", 2);
+            if (parts.length != 2) throw new IllegalArgumentException("Expected key=weight but found '" + entry.trim() + "'");
+
+            String key = parts[0].trim();
+            int value;
+            try {
+                value = Integer.parseInt(parts[1].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid weight for " + key + ": '" + parts[1].trim() + "'");
+            }
+
+            switch (key) {
+                case "roommate": rules.put(Rule.ROOMMATE, value); break;
+                case "internship": rules.put(Rule.SHARED_INTERNSHIP, value); break;
+                case "major": rules.put(Rule.SAME_MAJOR, value); break;
+                case "age": rules.put(Rule.SAME_AGE, value); break;
+                case "referralBase": referralBase = value; break;
+                default: throw new IllegalArgumentException("Unknown scoring rule: " + key);
+            }
+        }
+        return compile(rules, referralBase);
+    }
+
+    // Returns the weight of a rule, or 0 if the rule set does not use it.
+    public int weight(Rule rule) {
+        return weight(rules, rule);
+    }
+
+    // Returns the rule set this scorer was compiled from.
+    public Map<Rule, Integer> rules() {
+        return rules;
+    }
+
+    /**
+     * Scores a pair of students; a.calculateConnectionStrength(b) under the DEFAULT rules.
+     *
+     * @param a The first student.
+     * @param b The second student.
+     * @return The connection strength.
+     */
+    public int score(UniversityStudent a, UniversityStudent b) {
+        int strength = 0;
+        if (scoresRoommate) {
+            UniversityStudent roommate = a.getRoommate();
+            if (roommate != null && roommate.hasSameName(b)) strength += roommateWeight;
+        }
+        if (scoresInternships) strength += internshipWeight * a.sharedInternships(b);
+        if (a.hasSameMajor(b)) strength += majorWeight;
+        if (a.getAge() == b.getAge()) strength += ageWeight;
+        return strength;
+    }
+
+    // Returns the cost of following an edge of the given strength in a referral search.
+    public int referralCost(int weight) {
+        return Math.max(1, referralBase - weight);
+    }
+
+    @Override
+    public String toString() {
+        return "roommate=" + roommateWeight + ", internship=" + internshipWeight + ", major=" + majorWeight
+                + ", age=" + ageWeight + ", referralBase=" + referralBase;
+    }
+}
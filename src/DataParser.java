@@ -1,11 +1,27 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 /**
  * Utility class responsible for parsing student data from external files.
  * Converts text-based input into UniversityStudent objects.
+ * Files are read as UTF-8 through an NIO channel and tokenized on raw bytes, so large
+ * rosters can be streamed record by record without holding the whole file in memory.
  */
 public class DataParser {
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+    private static final long MIN_CHUNK_SIZE = 4L << 20;
+    private static final long MAX_CHUNK_SIZE = 1L << 30;
+    private static final byte[] STUDENT_MARKER = "Student:".getBytes(StandardCharsets.US_ASCII);
+
     /**
      * Parses a given input file and creates a list of UniversityStudent objects.
      *
@@ -15,103 +31,401 @@ public class DataParser {
      */
     public static List<UniversityStudent> parseStudents(String filename) throws IOException {
         List<UniversityStudent> students = new ArrayList<>();
-        BufferedReader reader = new BufferedReader(new FileReader(filename));
+        streamStudents(filename, students::add);
+        return students;
+    }
+
+    /**
+     * Parses a file and hands each UniversityStudent to the sink as soon as its record is complete.
+     * On the first malformed record the error is printed and parsing stops; the students already
+     * delivered are kept, exactly as with parseStudents. Each call encodes its students in a new
+     * StringDictionary.Scope.
+     *
+     * @param filename The path to the input file containing student data.
+     * @param sink     Receives every student in file order.
+     * @return true if the whole file was parsed, false if parsing stopped on an error.
+     * @throws IOException If the file cannot be read or found.
+     */
+    public static boolean streamStudents(String filename, Consumer<UniversityStudent> sink) throws IOException {
+        RecordParser parser = new RecordParser(sink, new StringDictionary.Scope());
+        LineSplitter lines = new LineSplitter(parser);
 
-        String line;
-        String name = null, gender = null, major = null;
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
 
-        int age = 0;
-        int year = 0;
-        double gpa = 0.0;
+            while (channel.read(buffer) != -1) {
+                if (!lines.feed(buffer.array(), buffer.position())) return report(parser);
+                buffer.clear();
+            }
+        }
 
-        List<String> roommatePreferences = new ArrayList<>();
-        List<String> previousInternships = new ArrayList<>();
+        if (!lines.end()) return report(parser);
+        return true;
+    }
 
-        boolean inStudent = false;
+    /**
+     * Parses a file on several cores. The file is memory-mapped in chunks whose boundaries are
+     * moved forward to the next "Student:" line, so every chunk starts a fresh record and can be
+     * parsed independently. Results are joined in file order, and if any record is malformed the
+     * first one in file order is reported and everything after it is dropped, as in parseStudents.
+     * All chunks share one StringDictionary.Scope.
+     *
+     * @param filename The path to the input file containing student data.
+     * @return A List of UniversityStudent objects parsed from the file, in file order.
+     * @throws IOException If the file cannot be read or found.
+     */
+    public static List<UniversityStudent> parseStudentsParallel(String filename) throws IOException {
+        List<UniversityStudent> students = new ArrayList<>();
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long size = channel.size();
+            int parallelism = ForkJoinPool.commonPool().getParallelism();
+            long chunkCount = Math.max(Math.min(size / MIN_CHUNK_SIZE, parallelism * 4L), (size + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+            if (chunkCount <= 1) return parseStudents(filename);
+
+            List<Long> bounds = new ArrayList<>();
+            bounds.add(0L);
+            for (long c = 1; c < chunkCount; c++) {
+                long bound = alignToRecord(channel, c * (size / chunkCount), size);
+                if (bound > bounds.get(bounds.size() - 1) && bound < size) bounds.add(bound);
+            }
+            bounds.add(size);
+
+            ChunkResult[] results = new ChunkResult[bounds.size() - 1];
+            StringDictionary.Scope scope = new StringDictionary.Scope();
+            IOException[] failure = new IOException[1];
+            IntStream.range(0, results.length).parallel().forEach(c -> {
+                try {
+                    results[c] = parseChunk(channel, bounds.get(c), bounds.get(c + 1), scope);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) throw failure[0];
+
+            for (ChunkResult result : results) {
+                students.addAll(result.students);
+                if (result.error != null) {
+                    System.out.println(result.error);
+                    break;
+                }
+            }
+        }
+        return students;
+    }
+
+    // Parses the bytes [from, to) of the file as if they were a whole file.
+    private static ChunkResult parseChunk(FileChannel channel, long from, long to, StringDictionary.Scope scope) throws IOException {
+        ChunkResult result = new ChunkResult();
+        RecordParser parser = new RecordParser(result.students::add, scope);
+        LineSplitter lines = new LineSplitter(parser);
+
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        byte[] block = new byte[READ_BUFFER_SIZE];
+        boolean ok = true;
+        while (ok && mapped.hasRemaining()) {
+            int length = Math.min(block.length, mapped.remaining());
+            mapped.get(block, 0, length);
+            ok = lines.feed(block, length);
+        }
+        if (ok) ok = lines.end();
+
+        if (!ok) result.error = parser.error();
+        return result;
+    }
+
+    // Returns the offset of the first line at or after position whose trimmed text is "Student:",
+    // or size if there is none.
+    private static long alignToRecord(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        byte[] bytes = buffer.array();
+        long lineStart = -1;
+        long offset = Math.max(0, position - 1);
+        int matched = 0;
+
+        // The byte before position decides whether position itself starts a line.
+        if (position == 0) lineStart = 0;
+
+        while (offset < size) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            if (read <= 0) break;
+
+            for (int i = 0; i < read; i++, offset++) {
+                byte b = bytes[i];
+                if (b == '\n' || b == '\r') {
+                    if (lineStart >= 0 && matched == STUDENT_MARKER.length) return lineStart;
+                    lineStart = offset + 1;
+                    matched = 0;
+                } else if (lineStart < 0 || (b & 0xFF) <= ' ' && (matched == 0 || matched == STUDENT_MARKER.length)) {
+                    // Before the first full line, or leading and trailing whitespace of a line.
+                } else if (matched >= 0 && matched < STUDENT_MARKER.length && b == STUDENT_MARKER[matched]) {
+                    matched++;
+                } else {
+                    matched = -1;
+                }
+            }
+        }
+        if (lineStart >= 0 && matched == STUDENT_MARKER.length) return lineStart;
+        return size;
+    }
+
+    /**
+     * Students and the first error of one chunk of a file.
+     */
+    private static class ChunkResult {
+        final List<UniversityStudent> students = new ArrayList<>();
+        String error;
+    }
+
+    private static boolean report(RecordParser parser) {
+        System.out.println(parser.error());
+        return false;
+    }
+
+    /**
+     * Splits blocks of bytes into lines for a RecordParser, carrying a partial line across blocks.
+     * Both '\n' and '\r' end a line; the empty lines this produces for "\r\n" are skipped by the parser.
+     */
+    static class LineSplitter {
+        private final RecordParser parser;
+        private byte[] carry = new byte[256];
+        private int carryLength = 0;
+
+        LineSplitter(RecordParser parser) {
+            this.parser = parser;
+        }
 
-        line = reader.readLine();
-        while (line != null) {
-            line = line.trim();
+        // Feeds bytes[0, limit). Returns false as soon as the parser reports an error.
+        boolean feed(byte[] bytes, int limit) {
+            int lineStart = 0;
 
-            if (line.isEmpty()) continue;
+            for (int i = 0; i < limit; i++) {
+                if (bytes[i] != '\n' && bytes[i] != '\r') continue;
 
-            if (line.equals("Student:")) {
-                if (inStudent && name != null) {
-                    students.add(new UniversityStudent(name, age, gender, year, major, gpa, roommatePreferences, previousInternships));
+                boolean ok;
+                if (carryLength == 0) {
+                    ok = parser.line(bytes, lineStart, i);
+                } else {
+                    append(bytes, lineStart, i);
+                    ok = parser.line(carry, 0, carryLength);
+                    carryLength = 0;
                 }
-                name = null; 
-                gender = null; 
-                major = null; 
-                age = 0; 
-                year = 0; 
+                if (!ok) return false;
+                lineStart = i + 1;
+            }
+
+            // Keep the unfinished tail of the block for the next call.
+            append(bytes, lineStart, limit);
+            return true;
+        }
+
+        // Flushes the last line and the last record. Returns false if either is malformed.
+        boolean end() {
+            if (carryLength > 0 && !parser.line(carry, 0, carryLength)) return false;
+            carryLength = 0;
+            parser.finish();
+            return true;
+        }
+
+        private void append(byte[] bytes, int from, int to) {
+            int needed = carryLength + to - from;
+            if (needed > carry.length) carry = Arrays.copyOf(carry, Math.max(needed, carry.length * 2));
+            System.arraycopy(bytes, from, carry, carryLength, to - from);
+            carryLength = needed;
+        }
+    }
+
+    /**
+     * Line-by-line state machine for the roster format. It works on byte ranges so callers can
+     * feed it straight from a read buffer, and only decodes the values it keeps.
+     * Blank lines are skipped, lines outside a "Student:" block are ignored, and a record is
+     * emitted when the next "Student:" line or the end of input is reached.
+     */
+    static class RecordParser {
+        private static final byte[] STUDENT = ascii("Student:");
+        private static final byte[] NAME = ascii("Name");
+        private static final byte[] AGE = ascii("Age");
+        private static final byte[] GENDER = ascii("Gender");
+        private static final byte[] YEAR = ascii("Year");
+        private static final byte[] MAJOR = ascii("Major");
+        private static final byte[] GPA = ascii("GPA");
+        private static final byte[] ROOMMATE_PREFERENCES = ascii("RoommatePreferences");
+        private static final byte[] PREVIOUS_INTERNSHIPS = ascii("PreviousInternships");
+
+        private final Consumer<UniversityStudent> sink;
+        private final StringDictionary.Scope scope;
+        private String error;
+
+        private String name, gender, major;
+        private int age;
+        private int year;
+        private double gpa;
+        private List<String> roommatePreferences = new ArrayList<>();
+        private List<String> previousInternships = new ArrayList<>();
+        private boolean inStudent = false;
+
+        RecordParser(Consumer<UniversityStudent> sink, StringDictionary.Scope scope) {
+            this.sink = sink;
+            this.scope = scope;
+        }
+
+        // Returns the message describing why parsing stopped, or null if it has not.
+        String error() {
+            return error;
+        }
+
+        /**
+         * Consumes one line, given as bytes[from, to) without its terminator.
+         *
+         * @return false if the line is malformed; error() then holds the message.
+         */
+        boolean line(byte[] bytes, int from, int to) {
+            while (from < to && (bytes[from] & 0xFF) <= ' ') from++;
+            while (to > from && (bytes[to - 1] & 0xFF) <= ' ') to--;
+
+            if (from == to) return true;
+
+            if (matches(bytes, from, to, STUDENT)) {
+                flush();
+                name = null;
+                gender = null;
+                major = null;
+                age = 0;
+                year = 0;
                 gpa = 0.0;
-                
+
                 roommatePreferences = new ArrayList<>();
                 previousInternships = new ArrayList<>();
                 inStudent = true;
-                
-                continue;
+
+                return true;
             }
 
-            if (!inStudent) continue;
-            
-            if (!line.contains(":")) {
-                System.out.println("Parsing error: Incorrect format in line: '" + line + "'. Expected format 'Name: <value>'.");
-                reader.close();
+            if (!inStudent) return true;
 
-                return students;
+            int colon = from;
+            while (colon < to && bytes[colon] != ':') colon++;
+            if (colon == to) {
+                error = "Parsing error: Incorrect format in line: '" + decode(bytes, from, to) + "'. Expected format 'Name: <value>'.";
+                return false;
             }
-            
-            String[] parsed = line.split(":", 2);
-            
-            String key = parsed[0].trim();
-            String value = "";
-            if (parsed.length > 1) value = parsed[1].trim();
-            
-            try {
-                switch (key) {
-                    case "Name":
-                        name = value;
-                        break;
-                    case "Age":
-                        age = Integer.parseInt(value);
-                        break;
-                    case "Gender":
-                        gender = value;
-                        break;
-                    case "Year":
-                        year = Integer.parseInt(value);
-                        break;
-                    case "Major":
-                        major = value;
-                        break;
-                    case "GPA":
-                        gpa = Double.parseDouble(value);
-                        break;
-                    case "RoommatePreferences":
-                        if (!value.isEmpty() && !value.equalsIgnoreCase("None")) {
-                            roommatePreferences = new ArrayList<>(Arrays.asList(value.split(",\\s*")));
-                        }
-                        break;
-                    case "PreviousInternships":
-                        if (!value.isEmpty() && !value.equalsIgnoreCase("None")) {
-                            previousInternships = new ArrayList<>(Arrays.asList(value.split(",\\s*")));
-                        }
-                        break;
+
+            int keyEnd = colon;
+            while (keyEnd > from && (bytes[keyEnd - 1] & 0xFF) <= ' ') keyEnd--;
+            int valueStart = colon + 1;
+            while (valueStart < to && (bytes[valueStart] & 0xFF) <= ' ') valueStart++;
+
+            if (matches(bytes, from, keyEnd, NAME)) {
+                name = decode(bytes, valueStart, to);
+            } else if (matches(bytes, from, keyEnd, GENDER)) {
+                gender = decode(bytes, valueStart, to);
+            } else if (matches(bytes, from, keyEnd, MAJOR)) {
+                major = decode(bytes, valueStart, to);
+            } else if (matches(bytes, from, keyEnd, AGE)) {
+                try {
+                    age = parseInt(bytes, valueStart, to);
+                } catch (NumberFormatException e) {
+                    return numberError("age", bytes, valueStart, to);
+                }
+            } else if (matches(bytes, from, keyEnd, YEAR)) {
+                try {
+                    year = parseInt(bytes, valueStart, to);
+                } catch (NumberFormatException e) {
+                    return numberError("year", bytes, valueStart, to);
+                }
+            } else if (matches(bytes, from, keyEnd, GPA)) {
+                try {
+                    gpa = Double.parseDouble(decode(bytes, valueStart, to));
+                } catch (NumberFormatException e) {
+                    return numberError("gpa", bytes, valueStart, to);
+                }
+            } else if (matches(bytes, from, keyEnd, ROOMMATE_PREFERENCES)) {
+                if (valueStart < to && !isNone(bytes, valueStart, to)) {
+                    roommatePreferences = splitList(bytes, valueStart, to);
+                }
+            } else if (matches(bytes, from, keyEnd, PREVIOUS_INTERNSHIPS)) {
+                if (valueStart < to && !isNone(bytes, valueStart, to)) {
+                    previousInternships = splitList(bytes, valueStart, to);
                 }
-            } catch (NumberFormatException e) {
-                System.out.println("Number format error: Invalid number format for " + key.toLowerCase() + ": '" + value + "' in student entry for " + name + ".");
-                reader.close();
-                return students;
             }
+            return true;
+        }
 
-            line = reader.readLine();
+        // Emits the last record once the input is exhausted.
+        void finish() {
+            flush();
+            inStudent = false;
         }
 
-        if (inStudent && name != null) {
-            students.add(new UniversityStudent(name, age, gender, year, major, gpa, roommatePreferences, previousInternships));
+        private void flush() {
+            if (inStudent && name != null) {
+                sink.accept(new UniversityStudent(name, age, gender, year, major, gpa, roommatePreferences, previousInternships, scope));
+            }
+        }
+
+        private boolean numberError(String key, byte[] bytes, int from, int to) {
+            error = "Number format error: Invalid number format for " + key + ": '" + decode(bytes, from, to) + "' in student entry for " + name + ".";
+            return false;
+        }
+
+        // Splits on commas and drops whitespace after each comma, like value.split(",\\s*").
+        private static List<String> splitList(byte[] bytes, int from, int to) {
+            List<String> items = new ArrayList<>();
+            int start = from;
+            for (int i = from; i <= to; i++) {
+                if (i < to && bytes[i] != ',') continue;
+                items.add(decode(bytes, start, i));
+                start = i + 1;
+                while (start < to && isRegexSpace(bytes[start])) start++;
+                i = start - 1;
+            }
+            // String.split drops trailing empty strings.
+            while (!items.isEmpty() && items.get(items.size() - 1).isEmpty()) {
+                items.remove(items.size() - 1);
+            }
+            return items;
+        }
+
+        private static boolean isRegexSpace(byte b) {
+            return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
+        }
+
+        // Case-insensitive match against "None".
+        private static boolean isNone(byte[] bytes, int from, int to) {
+            return to - from == 4
+                    && (bytes[from] | 0x20) == 'n' && (bytes[from + 1] | 0x20) == 'o'
+                    && (bytes[from + 2] | 0x20) == 'n' && (bytes[from + 3] | 0x20) == 'e';
+        }
+
+        // Parses plain ASCII decimals directly and defers anything unusual to Integer.parseInt.
+        private static int parseInt(byte[] bytes, int from, int to) {
+            int length = to - from;
+            if (length == 0 || length > 9) return Integer.parseInt(decode(bytes, from, to));
+
+            int value = 0;
+            for (int i = from; i < to; i++) {
+                int digit = bytes[i] - '0';
+                if (digit < 0 || digit > 9) return Integer.parseInt(decode(bytes, from, to));
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+
+        private static boolean matches(byte[] bytes, int from, int to, byte[] expected) {
+            if (to - from != expected.length) return false;
+            for (int i = 0; i < expected.length; i++) {
+                if (bytes[from + i] != expected[i]) return false;
+            }
+            return true;
+        }
+
+        private static String decode(byte[] bytes, int from, int to) {
+            return new String(bytes, from, to - from, StandardCharsets.UTF_8);
+        }
+
+        private static byte[] ascii(String s) {
+            return s.getBytes(StandardCharsets.US_ASCII);
         }
-        reader.close();
-        return students;
     }
 }
@@ -1,13 +1,11 @@
-import java.util.concurrent.Semaphore;
-
 /**
  * Represents a thread used to simulate sending a friend request between students.
- * Handles the concurrent modification of friend lists.
+ * Handles the concurrent modification of friend lists. Only the two students involved are
+ * locked, through StudentLocks, so requests between unrelated students run in parallel.
  */
 public class FriendRequestThread implements Runnable {
     private UniversityStudent sender;
     private UniversityStudent receiver;
-    private static final Semaphore semaphore = new Semaphore(1);
 
     /**
      * Constructs a new FriendRequestThread.
@@ -27,16 +25,22 @@ public class FriendRequestThread implements Runnable {
      */
     @Override
     public void run() {
-        try {
-            semaphore.acquire();
-            
+        befriend(sender, receiver);
+        // Printed after the locks are released, so slow console output never blocks other requests.
+        System.out.println(sender.getName() + " sent a friend request to " + receiver.getName());
+    }
+
+    /**
+     * Makes two students friends of each other as one step: no thread sees only one side added.
+     * Does not print, so it can be used for bulk operations.
+     *
+     * @param sender   The student sending the friend request.
+     * @param receiver The student receiving the friend request.
+     */
+    public static void befriend(UniversityStudent sender, UniversityStudent receiver) {
+        StudentLocks.withPair(sender, receiver, () -> {
             sender.addFriend(receiver.getName());
             receiver.addFriend(sender.getName());
-            System.out.println(sender.getName() + " sent a friend request to " + receiver.getName());
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        } finally {
-            semaphore.release();
-        }
+        });
     }
 }
@@ -1,9 +1,15 @@
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 
 /**
  * Implements the Gale-Shapley algorithm to solve the Stable Matching Problem
  * for roommate assignments.
+ *
+ * Preferences are resolved once into a PreferenceTable over dense student ids, so each
+ * proposal costs O(1): the proposer's next choice comes from an int cursor, and the rank
+ * comparison in prefersOver reads precomputed ranks instead of searching preference lists.
  */
 public class GaleShapley {
 
@@ -16,45 +22,496 @@ public class GaleShapley {
      * Students are matched and their 'roommate' field is updated.
      */
     public static void assignRoommates(List<UniversityStudent> students) {
+        PreferenceTable table = tableFor(students);
+        if (table == null) {
+            // Repeated names or roommates assigned beforehand: match by name as before.
+            assignRoommatesByName(students);
+            return;
+        }
+
+        match(table, students.size()).apply(students);
+    }
+
+    /**
+     * Computes the matching assignRoommates would assign, without reading or writing any
+     * roommate field.
+     *
+     * @param students The students to match; names must be unique.
+     * @return The position of each student's partner in the list, or -1 if unmatched.
+     * @throws IllegalArgumentException If two students share a name or a student has none.
+     */
+    static int[] partners(List<UniversityStudent> students) {
+        PreferenceTable table = PreferenceTable.build(students);
+        if (table == null) throw new IllegalArgumentException("Matching by id needs a unique name for every student.");
+        return match(table, students.size()).partner;
+    }
+
+    private static Matching match(PreferenceTable table, int n) {
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = i;
+        }
+        Matching matching = new Matching(n);
+        matching.propose(table, ids, 0, n);
+        return matching;
+    }
+
+    /**
+     * Assigns the same roommates as assignRoommates(students), matching each connected component
+     * of the preference graph on its own worker. Proposals never leave a component, and the
+     * shared FIFO of the sequential run visits each component's students in the order a FIFO
+     * of that component alone would, so matching components separately changes nothing.
+     * Roommate fields are written in one pass after every component has finished.
+     *
+     * @param students A list of UniversityStudent objects to be matched.
+     * @param pool     The pool that matches the components.
+     */
+    public static void assignRoommates(List<UniversityStudent> students, ForkJoinPool pool) {
+        PreferenceTable table = tableFor(students);
+        if (table == null) {
+            assignRoommatesByName(students);
+            return;
+        }
+
+        Components components = Components.of(table);
+        Matching matching = new Matching(students.size());
+        int grain = Math.max(256, students.size() / (pool.getParallelism() * 8));
+        pool.invoke(new ComponentRangeTask(table, components, matching, grain, 0, components.count()));
+        matching.apply(students);
+    }
+
+    // Returns the dense-id table, or null if the name-based matcher must run instead.
+    private static PreferenceTable tableFor(List<UniversityStudent> students) {
+        for (UniversityStudent s : students) {
+            if (s.getRoommate() != null) return null;
+        }
+        return PreferenceTable.build(students);
+    }
+
+    /**
+     * Matching state over dense ids. Runs over disjoint sets of students may share one
+     * instance from different threads, since each only touches its own students' slots.
+     */
+    private static final class Matching {
+        final int[] cursor;
+        final int[] partner;
+        final int[] partnerRank;
+
+        Matching(int n) {
+            cursor = new int[n];
+            partner = new int[n];
+            partnerRank = new int[n];
+            Arrays.fill(partner, -1);
+        }
+
+        /**
+         * Runs proposals among ids[from, to), which must be closed under the preference edges,
+         * queueing the students in the given order.
+         */
+        void propose(PreferenceTable table, int[] ids, int from, int to) {
+            IntQueue free = new IntQueue(to - from);
+            for (int k = from; k < to; k++) {
+                if (table.length(ids[k]) > 0) free.add(ids[k]);
+            }
+
+            while (!free.isEmpty()) {
+                int proposer = free.poll();
+                if (partner[proposer] >= 0) continue;
+
+                int k = cursor[proposer];
+                // A displaced student without preferences has no one to propose to.
+                if (k >= table.length(proposer)) continue;
+                cursor[proposer] = k + 1;
+
+                int proposal = table.start[proposer] + k;
+                int pref = table.target[proposal];
+                if (pref < 0) {
+                    free.add(proposer);
+                    continue;
+                }
+
+                if (partner[pref] < 0) {
+                    match(proposer, pref, proposal, table, partner, partnerRank);
+                } else {
+                    int current = partner[pref];
+                    if (prefersOver(table.reverseRank[proposal], partnerRank[pref])) {
+                        partner[current] = -1;
+                        free.add(current);
+                        match(proposer, pref, proposal, table, partner, partnerRank);
+                    } else {
+                        free.add(proposer);
+                    }
+                }
+            }
+        }
+
+        void apply(List<UniversityStudent> students) {
+            for (int i = 0; i < partner.length; i++) {
+                if (partner[i] >= 0) students.get(i).setRoommate(students.get(partner[i]));
+            }
+        }
+    }
+
+    /**
+     * Connected components of the preference graph, found with union-find, in CSR form.
+     * Components are ordered by their smallest id and list their ids in ascending order.
+     */
+    static final class Components {
+        final int[] start;
+        final int[] ids;
+
+        private Components(int[] start, int[] ids) {
+            this.start = start;
+            this.ids = ids;
+        }
+
+        int count() {
+            return start.length - 1;
+        }
+
+        static Components of(PreferenceTable table) {
+            int n = table.start.length - 1;
+            int[] parent = new int[n];
+            for (int i = 0; i < n; i++) {
+                parent[i] = i;
+            }
+            for (int i = 0; i < n; i++) {
+                for (int e = table.start[i]; e < table.start[i + 1]; e++) {
+                    if (table.target[e] >= 0) union(parent, i, table.target[e]);
+                }
+            }
+
+            // Number components by their smallest member, then bucket ids in ascending order.
+            int[] component = new int[n];
+            int[] sizes = new int[n + 1];
+            int[] label = new int[n];
+            Arrays.fill(label, -1);
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                int root = find(parent, i);
+                if (label[root] < 0) label[root] = count++;
+                component[i] = label[root];
+                sizes[component[i] + 1]++;
+            }
+
+            int[] start = Arrays.copyOf(sizes, count + 1);
+            for (int c = 0; c < count; c++) {
+                start[c + 1] += start[c];
+            }
+            int[] fill = Arrays.copyOf(start, count);
+            int[] ids = new int[n];
+            for (int i = 0; i < n; i++) {
+                ids[fill[component[i]]++] = i;
+            }
+            return new Components(start, ids);
+        }
+
+        private static int find(int[] parent, int i) {
+            while (parent[i] != i) {
+                parent[i] = parent[parent[i]];
+                i = parent[i];
+            }
+            return i;
+        }
+
+        private static void union(int[] parent, int a, int b) {
+            int ra = find(parent, a);
+            int rb = find(parent, b);
+            // Path halving in find keeps the trees shallow without tracking ranks.
+            if (ra < rb) parent[rb] = ra;
+            else if (rb < ra) parent[ra] = rb;
+        }
+    }
+
+    /**
+     * Fork/join task that matches a range of components, splitting until the range holds one
+     * component or no more than grain students.
+     */
+    private static class ComponentRangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final PreferenceTable table;
+        private final Components components;
+        private final Matching matching;
+        private final int grain;
+        private final int from;
+        private final int to;
+
+        ComponentRangeTask(PreferenceTable table, Components components, Matching matching, int grain, int from, int to) {
+            this.table = table;
+            this.components = components;
+            this.matching = matching;
+            this.grain = grain;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1 && components.start[to] - components.start[from] > grain) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ComponentRangeTask(table, components, matching, grain, from, mid),
+                        new ComponentRangeTask(table, components, matching, grain, mid, to));
+                return;
+            }
+            for (int c = from; c < to; c++) {
+                matching.propose(table, components.ids, components.start[c], components.start[c + 1]);
+            }
+        }
+    }
+
+    // Pairs a proposer with the student it proposed to, recording each one's rank for the other.
+    private static void match(int proposer, int pref, int proposal, PreferenceTable table, int[] partner, int[] partnerRank) {
+        partner[proposer] = pref;
+        partner[pref] = proposer;
+        partnerRank[proposer] = table.selfRank[proposal];
+        partnerRank[pref] = table.reverseRank[proposal];
+    }
+
+    // Returns true if a student ranks a candidate above its current partner; -1 means unranked.
+    private static boolean prefersOver(int candidateRank, int currentRank) {
+        if (candidateRank == -1) return false;
+        if (currentRank == -1) return true;
+
+        return candidateRank < currentRank;
+    }
+
+    /**
+     * Preference lists flattened over dense ids (positions in the student list).
+     * For proposal k of student i, stored at start[i] + k:
+     * target is the id of the named student, or -1 if no student has that name;
+     * selfRank is where that name first appears in i's own list;
+     * reverseRank is where i's name first appears in the target's list, or -1.
+     * First occurrences match the List.indexOf ranking of the name-based matcher.
+     */
+    static final class PreferenceTable {
+        final int[] start;
+        final int[] target;
+        final int[] selfRank;
+        final int[] reverseRank;
+
+        private PreferenceTable(int[] start, int[] target, int[] selfRank, int[] reverseRank) {
+            this.start = start;
+            this.target = target;
+            this.selfRank = selfRank;
+            this.reverseRank = reverseRank;
+        }
+
+        int length(int id) {
+            return start[id + 1] - start[id];
+        }
+
+        /**
+         * Builds the table, or returns null if two students share a name, a student has none, or
+         * the students were encoded in different dictionary scopes, since dense ids cannot stand
+         * in for names then.
+         * Runs in time linear in the total length of the preference lists.
+         *
+         * @param students The students to match.
+         * @return The table, or null.
+         */
+        static PreferenceTable build(List<UniversityStudent> students) {
+            int n = students.size();
+            // Sized by the students, not the dictionary, so re-matching one component stays cheap.
+            NameIds idOfName = new NameIds(n);
+            int[] start = new int[n + 1];
+            for (int i = 0; i < n; i++) {
+                UniversityStudent s = students.get(i);
+                int name = s.getNameCode();
+                // Codes from different dictionary scopes cannot be compared.
+                if (s.getScope() != students.get(0).getScope()) return null;
+                if (name < 0 || !idOfName.put(name, i)) return null;
+                start[i + 1] = start[i] + s.getRoommatePreferenceCodes().length;
+            }
+
+            int total = start[n];
+            int[] target = new int[total];
+            int[] selfRank = new int[total];
+            int[] reverseRank = new int[total];
+            // firstRank[t] is where the list being scanned first names t; valid while seenBy[t] is its owner.
+            int[] firstRank = new int[n];
+            int[] seenBy = new int[n];
+            Arrays.fill(seenBy, -1);
+            int[] incoming = new int[n + 1];
+
+            for (int i = 0; i < n; i++) {
+                int[] prefs = students.get(i).getRoommatePreferenceCodes();
+                for (int k = 0; k < prefs.length; k++) {
+                    int code = prefs[k];
+                    int t = code >= 0 ? idOfName.get(code) : -1;
+                    int e = start[i] + k;
+                    target[e] = t;
+                    selfRank[e] = -1;
+                    reverseRank[e] = -1;
+                    if (t < 0) continue;
+                    if (seenBy[t] != i) {
+                        seenBy[t] = i;
+                        firstRank[t] = k;
+                    }
+                    selfRank[e] = firstRank[t];
+                    incoming[t + 1]++;
+                }
+            }
+
+            // Group proposals by the student they are addressed to.
+            for (int t = 0; t < n; t++) {
+                incoming[t + 1] += incoming[t];
+            }
+            int[] fill = Arrays.copyOf(incoming, n);
+            int[] proposals = new int[incoming[n]];
+            int[] proposers = new int[incoming[n]];
+            for (int i = 0; i < n; i++) {
+                for (int e = start[i]; e < start[i + 1]; e++) {
+                    int t = target[e];
+                    if (t < 0) continue;
+                    proposals[fill[t]] = e;
+                    proposers[fill[t]++] = i;
+                }
+            }
+
+            // For each target j, each proposal to j is ranked where j's own list first names the proposer.
+            Arrays.fill(seenBy, -1);
+            for (int j = 0; j < n; j++) {
+                if (incoming[j] == incoming[j + 1]) continue;
+                for (int e = start[j]; e < start[j + 1]; e++) {
+                    int t = target[e];
+                    if (t >= 0 && seenBy[t] != j) {
+                        seenBy[t] = j;
+                        firstRank[t] = e - start[j];
+                    }
+                }
+                for (int p = incoming[j]; p < incoming[j + 1]; p++) {
+                    int proposer = proposers[p];
+                    if (seenBy[proposer] == j) reverseRank[proposals[p]] = firstRank[proposer];
+                }
+            }
+            return new PreferenceTable(start, target, selfRank, reverseRank);
+        }
+    }
+
+    /**
+     * Open-addressing map from name codes to dense ids, with room for a fixed number of names.
+     */
+    private static final class NameIds {
+        private final int[] codes;
+        private final int[] ids;
+        private final int mask;
+
+        NameIds(int capacity) {
+            int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+            codes = new int[size];
+            ids = new int[size];
+            mask = size - 1;
+            Arrays.fill(codes, -1);
+        }
+
+        // Maps a code to an id, returning false if the code is already mapped.
+        boolean put(int code, int id) {
+            int slot = (code * 0x9E3779B9) >>> 1 & mask;
+            while (codes[slot] >= 0) {
+                if (codes[slot] == code) return false;
+                slot = (slot + 1) & mask;
+            }
+            codes[slot] = code;
+            ids[slot] = id;
+            return true;
+        }
+
+        // Returns the id of a code, or -1 if it is not mapped.
+        int get(int code) {
+            int slot = (code * 0x9E3779B9) >>> 1 & mask;
+            while (codes[slot] >= 0) {
+                if (codes[slot] == code) return ids[slot];
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Array-backed FIFO of ids that grows when full. A student may be queued more than once,
+     * as in the name-based matcher, where a queued student can be matched and displaced again.
+     */
+    private static final class IntQueue {
+        private int[] data;
+        private int head;
+        private int size;
+
+        IntQueue(int capacity) {
+            data = new int[Math.max(capacity, 1)];
+        }
+
+        void add(int value) {
+            if (size == data.length) {
+                int[] grown = new int[data.length * 2];
+                for (int k = 0; k < size; k++) {
+                    grown[k] = data[(head + k) % data.length];
+                }
+                data = grown;
+                head = 0;
+            }
+            data[(head + size++) % data.length] = value;
+        }
+
+        int poll() {
+            int value = data[head];
+            head = (head + 1) % data.length;
+            size--;
+            return value;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+
+    /**
+     * The original matcher, resolving students and ranks by name on every proposal.
+     * Used when names repeat or roommates are already assigned, and as the reference
+     * the dense-id matcher is checked against.
+     *
+     * @param students A list of UniversityStudent objects to be matched.
+     */
+    static void assignRoommatesByName(List<UniversityStudent> students) {
         Map<String, UniversityStudent> studentMap = new HashMap<>();
         for (UniversityStudent s : students) {
             studentMap.put(s.getName(), s);
         }
-        
+
         Queue<UniversityStudent> free = new LinkedList<>();
         Map<UniversityStudent, Integer> nextProp = new HashMap<>();
-        
+
         for (UniversityStudent s : students) {
             if (!s.getRoommatePreferences().isEmpty()) {
                 free.add(s);
                 nextProp.put(s, 0);
             }
         }
-        
+
         while (!free.isEmpty()) {
             UniversityStudent proposer = free.poll();
             if (proposer.getRoommate() != null) continue;
-            
+
             List<String> prefs = proposer.getRoommatePreferences();
             int i = nextProp.get(proposer);
-            
+
             if (i >= prefs.size()) continue;
-            
+
             String prefName = prefs.get(i);
             nextProp.put(proposer, i + 1);
-            
+
             UniversityStudent pref = studentMap.get(prefName);
             if (pref == null) {
                 free.add(proposer);
                 continue;
             }
-            
+
             if (pref.getRoommate() == null) {
                 proposer.setRoommate(pref);
                 pref.setRoommate(proposer);
             } else {
                 UniversityStudent current = pref.getRoommate();
-                
+
                 if (prefersOver(pref, proposer, current)) {
                     current.setRoommate(null);
                     free.add(current);
@@ -67,7 +524,7 @@ public class GaleShapley {
             }
         }
     }
-    
+
     // Returns true if student prefers candidate over current partner.
     private static boolean prefersOver(UniversityStudent student, UniversityStudent candidate, UniversityStudent current) {
         List<String> prefs = student.getRoommatePreferences();
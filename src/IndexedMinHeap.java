@@ -0,0 +1,115 @@
+import java.util.Arrays;
+
+/**
+ * Binary min-heap over dense int ids with decrease-key support.
+ * Each id can be in the heap at most once; pos[] tracks where it sits so a
+ * shorter distance moves the existing entry up instead of inserting a duplicate.
+ */
+public class IndexedMinHeap {
+    private int[] heap;
+    private int[] key;
+    private int[] pos;
+    private int size;
+
+    /**
+     * Constructs an empty heap able to hold ids in [0, capacity).
+     *
+     * @param capacity The number of distinct ids the heap must support.
+     */
+    public IndexedMinHeap(int capacity) {
+        heap = new int[capacity];
+        key = new int[capacity];
+        pos = new int[capacity];
+        Arrays.fill(pos, -1);
+    }
+
+    // Returns the number of ids the heap can hold.
+    public int capacity() {
+        return pos.length;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int id) {
+        return pos[id] >= 0;
+    }
+
+    // Returns the smallest key currently in the heap. The heap must not be empty.
+    public int peekKey() {
+        return key[heap[0]];
+    }
+
+    /**
+     * Inserts an id, or lowers its key if it is already present with a larger key.
+     *
+     * @param id     The id to insert or update.
+     * @param newKey The new key for the id.
+     */
+    public void insertOrDecrease(int id, int newKey) {
+        if (pos[id] < 0) {
+            heap[size] = id;
+            pos[id] = size;
+            key[id] = newKey;
+            siftUp(size++);
+        } else if (newKey < key[id]) {
+            key[id] = newKey;
+            siftUp(pos[id]);
+        }
+    }
+
+    // Removes and returns the id with the smallest key. The heap must not be empty.
+    public int poll() {
+        int top = heap[0];
+        pos[top] = -1;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            pos[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    // Empties the heap. Runs in time proportional to the number of ids still queued.
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            pos[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int i) {
+        int id = heap[i];
+        int k = key[id];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            int p = heap[parent];
+            if (key[p] <= k) break;
+            heap[i] = p;
+            pos[p] = i;
+            i = parent;
+        }
+        heap[i] = id;
+        pos[id] = i;
+    }
+
+    private void siftDown(int i) {
+        int id = heap[i];
+        int k = key[id];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && key[heap[right]] < key[heap[child]]) child = right;
+            int c = heap[child];
+            if (k <= key[c]) break;
+            heap[i] = c;
+            pos[c] = i;
+            i = child;
+        }
+        heap[i] = id;
+        pos[id] = i;
+    }
+}
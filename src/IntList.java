@@ -0,0 +1,121 @@
+import java.util.Arrays;
+
+/**
+ * Minimal growable list of primitive ints.
+ * Used by the graph and matching code to avoid boxing on hot paths.
+ */
+public class IntList {
+    private int[] data;
+    private int size;
+
+    /**
+     * Constructs an empty list with a small default capacity.
+     */
+    public IntList() {
+        this(8);
+    }
+
+    /**
+     * Constructs an empty list with the given initial capacity.
+     *
+     * @param capacity The initial number of slots to allocate.
+     */
+    public IntList(int capacity) {
+        this.data = new int[Math.max(capacity, 1)];
+        this.size = 0;
+    }
+
+    public void add(int value) {
+        if (size == data.length) data = Arrays.copyOf(data, data.length * 2);
+        data[size++] = value;
+    }
+
+    public int get(int index) {
+        return data[index];
+    }
+
+    public void set(int index, int value) {
+        data[index] = value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    // Removes the last element; used when the list serves as a stack.
+    public int removeLast() {
+        return data[--size];
+    }
+
+    // Sorts the live portion of the list in ascending order.
+    public void sort() {
+        Arrays.sort(data, 0, size);
+    }
+
+    /**
+     * Returns the position of the first element that is strictly greater than the given value.
+     * The list must already be sorted in ascending order.
+     *
+     * @param value The value to search past.
+     * @return The index of the first element greater than value, or size() if there is none.
+     */
+    public int firstGreaterThan(int value) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (data[mid] <= value) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Inserts a value into a list sorted in ascending order, keeping it sorted.
+     *
+     * @param value The value to insert.
+     */
+    public void insertSorted(int value) {
+        int at = firstGreaterThan(value);
+        if (size == data.length) data = Arrays.copyOf(data, data.length * 2);
+        System.arraycopy(data, at, data, at + 1, size - at);
+        data[at] = value;
+        size++;
+    }
+
+    /**
+     * Removes one occurrence of a value from a list sorted in ascending order.
+     *
+     * @param value The value to remove.
+     * @return true if the value was found and removed.
+     */
+    public boolean removeSorted(int value) {
+        int at = firstGreaterThan(value) - 1;
+        if (at < 0 || data[at] != value) return false;
+        System.arraycopy(data, at + 1, data, at, size - at - 1);
+        size--;
+        return true;
+    }
+
+    // Sorts the list and drops repeated values.
+    public void sortDistinct() {
+        sort();
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (kept == 0 || data[kept - 1] != data[i]) data[kept++] = data[i];
+        }
+        size = kept;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+}
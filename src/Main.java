@@ -142,6 +142,22 @@ public class Main {
                     }
                 }
             }
+            // Verify that the indexed and parallel builds produce the same edges as the pairwise build.
+            StudentGraph pairwise = new StudentGraph(students, StudentGraph.BuildMode.PAIRWISE);
+            if (!graph.hasSameAdjacency(pairwise)) {
+                throw new Exception("Indexed graph build does not match the pairwise build.");
+            }
+            if (!new StudentGraph(students, StudentGraph.BuildMode.PARALLEL).hasSameAdjacency(pairwise)) {
+                throw new Exception("Parallel graph build does not match the pairwise build.");
+            }
+            // Verify that adding the students one at a time produces the same edges as well.
+            StudentGraph incremental = new StudentGraph(new ArrayList<>());
+            for (UniversityStudent s : students) {
+                incremental.addStudent(s);
+            }
+            if (!incremental.hasSameAdjacency(pairwise)) {
+                throw new Exception("Incremental graph build does not match the pairwise build.");
+            }
             graph.displayGraph();
             score += 30;
             System.out.println("Test: StudentGraph passed (+30 pts).");
@@ -167,26 +183,43 @@ public class Main {
             if (unpairedCount > 1) {
                 throw new Exception("Too many unpaired students: " + unpairedCount);
             }
+            // The dense-id matcher, run whole or per component, must choose exactly the pairs the name-based matcher chooses.
+            List<UniversityStudent> reference = new ArrayList<>();
+            List<UniversityStudent> partitioned = new ArrayList<>();
+            for (UniversityStudent s : students) {
+                reference.add(new UniversityStudent(s.name, s.age, s.gender, s.year, s.major, s.gpa, s.roommatePreferences, s.previousInternships));
+                partitioned.add(new UniversityStudent(s.name, s.age, s.gender, s.year, s.major, s.gpa, s.roommatePreferences, s.previousInternships));
+            }
+            GaleShapley.assignRoommatesByName(reference);
+            GaleShapley.assignRoommates(partitioned, ForkJoinPool.commonPool());
+            for (int i = 0; i < students.size(); i++) {
+                String actual = students.get(i).getRoommate() == null ? null : students.get(i).getRoommate().getName();
+                String expected = reference.get(i).getRoommate() == null ? null : reference.get(i).getRoommate().getName();
+                String byComponent = partitioned.get(i).getRoommate() == null ? null : partitioned.get(i).getRoommate().getName();
+                if (!Objects.equals(actual, expected) || !Objects.equals(byComponent, expected)) {
+                    throw new Exception("Roommate of " + students.get(i).name + " differs from the name-based matching.");
+                }
+            }
             score += 20;
             System.out.println("Test: GaleShapley passed (+20 pts).");
         } catch (Exception e) {
             System.out.println("Test: GaleShapley failed: " + e.getMessage());
         }
 
-        // Test FriendRequestThread and ChatThread with semaphores (20 pts)
+        // Test FriendRequestThread and ChatThread with per-student locks (20 pts)
         try {
             if (students.size() >= 2) {
-                ExecutorService executor = Executors.newFixedThreadPool(4);
                 UniversityStudent s1 = students.get(0);
                 UniversityStudent s2 = students.get(1);
-                // Submit multiple concurrent tasks.
-                executor.submit(new FriendRequestThread(s1, s2));
-                executor.submit(new ChatThread(s1, s2, "Hello there!"));
-                executor.submit(new FriendRequestThread(s2, s1));
-                executor.submit(new ChatThread(s2, s1, "Hi back!"));
-                executor.shutdown();
-                if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
-                    executor.shutdownNow();
+                // Submit multiple concurrent tasks as one batch on the shared executor.
+                CompletableFuture<Void> batch = SocialExecutor.shared().submitAll(Arrays.asList(
+                        new FriendRequestThread(s1, s2),
+                        new ChatThread(s1, s2, "Hello there!"),
+                        new FriendRequestThread(s2, s1),
+                        new ChatThread(s2, s1, "Hi back!")));
+                try {
+                    batch.get(5, TimeUnit.SECONDS);
+                } catch (TimeoutException e) {
                     throw new RuntimeException("Concurrency tasks did not finish in time.");
                 }
                 score += 20;
@@ -0,0 +1,545 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Partitions the student network into pods of at most a given size, keeping strongly
+ * connected students together. Works on the dense ids of a CompactStudentGraph.
+ *
+ * Two methods are offered. growPods is the reference method: it takes the first student not
+ * yet in a pod and grows a pod from it, Prim-style, always adding the outside student with the
+ * strongest edge to a member. propagatePods is the scalable one: size-bounded weighted label
+ * propagation, where every student repeatedly moves to the neighbouring pod it is most strongly
+ * connected to, as long as that pod has room. A round splits the active students into 8 classes
+ * by a hash of their id and steps through the classes one after another, so each class sees the
+ * moves applied by the classes before it. Within a step, the class's students propose moves in
+ * parallel against the pods as they stand; proposals that could cancel each other are held back
+ * a round, and the rest are applied in id order, so the result does not depend on the pool.
+ * Every step that moves a student strictly raises the total weight inside pods, so the rounds
+ * end, and only students next to a move are looked at again, so each round is linear in the
+ * edges around the students that are still moving.
+ *
+ * refinePods runs the same propagation from existing pods, and repod starts from the pods of an
+ * earlier graph version and reruns propagation only around the students that changed.
+ */
+public class PodFormation {
+    // Rounds of label propagation after which the pods are accepted even if moves remain.
+    public static final int MAX_ROUNDS = 50;
+    private static final int GRAIN = 1024;
+    // Active students are split into 2^CLASS_BITS classes by a hash of their id, stepped one after another.
+    private static final int CLASS_BITS = 3;
+    private static final int CLASSES = 1 << CLASS_BITS;
+
+    private final CompactStudentGraph graph;
+
+    /**
+     * Constructs a PodFormation instance associated with a specific student graph.
+     *
+     * @param graph The StudentGraph containing all students and their connections.
+     */
+    public PodFormation(StudentGraph graph) {
+        this(graph.compact());
+    }
+
+    /**
+     * Constructs a PodFormation instance over a compact graph, without building a StudentGraph.
+     *
+     * @param graph The CompactStudentGraph containing all students and their connections.
+     */
+    public PodFormation(CompactStudentGraph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * One partition of a graph into pods. Pods are numbered from 0 and never change after
+     * construction.
+     */
+    public static final class Pods {
+        private final CompactStudentGraph graph;
+        private final int capacity;
+        private final int[] podOf;
+        private final int[] start;
+        private final int[] members;
+
+        private Pods(CompactStudentGraph graph, int capacity, int[] podOf, int[] start, int[] members) {
+            this.graph = graph;
+            this.capacity = capacity;
+            this.podOf = podOf;
+            this.start = start;
+            this.members = members;
+        }
+
+        // Numbers pods by their smallest member id and lists each pod's members in ascending id order.
+        private static Pods fromLabels(CompactStudentGraph graph, int capacity, int[] label) {
+            int n = label.length;
+            int[] podOfLabel = new int[n];
+            Arrays.fill(podOfLabel, -1);
+            int[] podOf = new int[n];
+            int[] sizes = new int[n + 1];
+            int count = 0;
+            for (int v = 0; v < n; v++) {
+                if (podOfLabel[label[v]] < 0) podOfLabel[label[v]] = count++;
+                podOf[v] = podOfLabel[label[v]];
+                sizes[podOf[v] + 1]++;
+            }
+
+            int[] start = Arrays.copyOf(sizes, count + 1);
+            for (int p = 0; p < count; p++) {
+                start[p + 1] += start[p];
+            }
+            int[] fill = Arrays.copyOf(start, count);
+            int[] members = new int[n];
+            for (int v = 0; v < n; v++) {
+                members[fill[podOf[v]]++] = v;
+            }
+            return new Pods(graph, capacity, podOf, start, members);
+        }
+
+        // Returns the graph the pods partition.
+        public CompactStudentGraph graph() {
+            return graph;
+        }
+
+        // Returns the largest pod size allowed.
+        public int capacity() {
+            return capacity;
+        }
+
+        // Returns the number of pods.
+        public int count() {
+            return start.length - 1;
+        }
+
+        // Returns the number of students in a pod.
+        public int size(int pod) {
+            return start[pod + 1] - start[pod];
+        }
+
+        // Returns the students of a pod: in joining order for grown pods, by id for propagated ones.
+        public List<UniversityStudent> members(int pod) {
+            List<UniversityStudent> students = new ArrayList<>(size(pod));
+            for (int k = start[pod]; k < start[pod + 1]; k++) {
+                students.add(graph.studentAt(members[k]));
+            }
+            return students;
+        }
+
+        // Returns the pod of a student, or -1 if the student is not in the graph.
+        public int podOf(String name) {
+            int id = graph.idOf(name);
+            return id < 0 ? -1 : podOf[id];
+        }
+
+        /**
+         * Sums the connection strengths of the edges that lie inside a pod.
+         * The higher it is, the more of the network's strength the pods keep together.
+         *
+         * @return The total weight of the edges whose endpoints share a pod.
+         */
+        public long internalWeight() {
+            long total = 0;
+            for (int v = 0; v < podOf.length; v++) {
+                for (int e = graph.edgeStart(v); e < graph.edgeEnd(v); e++) {
+                    int u = graph.neighborAt(e);
+                    if (u > v && podOf[u] == podOf[v]) total += graph.weightAt(e);
+                }
+            }
+            return total;
+        }
+
+        /**
+         * Prints every pod and its members to the console.
+         */
+        public void print() {
+            System.out.println("Pod Assignments:");
+            for (int p = 0; p < count(); p++) {
+                StringBuilder line = new StringBuilder("  Pod " + p + ": ");
+                for (int k = start[p]; k < start[p + 1]; k++) {
+                    line.append(graph.studentAt(members[k]).getName());
+                    line.append(k < start[p + 1] - 1 ? ", " : ",");
+                }
+                System.out.println(line);
+            }
+        }
+    }
+
+    /**
+     * Forms pods of students based on connection strengths.
+     *
+     * @param podSize The maximum or target size for the pods.
+     */
+    public void formPods(int podSize) {
+        growPods(podSize).print();
+    }
+
+    /**
+     * Grows pods one at a time: each pod starts from the first student, in graph order, that is
+     * not yet in a pod, and repeatedly adds the outside student with the strongest connection to
+     * any member, earliest-found first on ties, until it is full or has no outside neighbours.
+     * Runs in O(E log E) on one thread.
+     *
+     * @param podSize The largest number of students in a pod.
+     * @return The pods, numbered in the order they were grown.
+     * @throws IllegalArgumentException If podSize is less than 1.
+     */
+    public Pods growPods(int podSize) {
+        checkPodSize(podSize);
+        int n = graph.size();
+        int[] podOf = new int[n];
+        Arrays.fill(podOf, -1);
+        int[] start = new int[n + 1];
+        int[] members = new int[n];
+        int count = 0;
+        int placed = 0;
+
+        // Keys are (255 - weight) << 32 | position in frontier, so the strongest, earliest entry comes first.
+        PriorityQueue<Long> queue = new PriorityQueue<>();
+        IntList frontier = new IntList();
+        for (int seed = 0; seed < n; seed++) {
+            if (podOf[seed] >= 0) continue;
+
+            int pod = count++;
+            queue.clear();
+            frontier.clear();
+            int next = seed;
+            while (true) {
+                podOf[next] = pod;
+                members[placed++] = next;
+                if (placed - start[pod] == podSize) break;
+
+                for (int e = graph.edgeStart(next); e < graph.edgeEnd(next); e++) {
+                    int u = graph.neighborAt(e);
+                    if (podOf[u] >= 0) continue;
+                    queue.add((long) (255 - graph.weightAt(e)) << 32 | frontier.size());
+                    frontier.add(u);
+                }
+                next = -1;
+                while (!queue.isEmpty() && next < 0) {
+                    int u = frontier.get((int) (long) queue.poll());
+                    if (podOf[u] < 0) next = u;
+                }
+                if (next < 0) break;
+            }
+            start[pod + 1] = placed;
+        }
+
+        return new Pods(graph, podSize, podOf, Arrays.copyOf(start, count + 1), members);
+    }
+
+    /**
+     * Forms pods with size-bounded weighted label propagation, starting from one pod per student.
+     *
+     * @param podSize The largest number of students in a pod.
+     * @param pool    The pool that proposes moves.
+     * @return The pods, numbered by their smallest student id.
+     * @throws IllegalArgumentException If podSize is less than 1.
+     */
+    public Pods propagatePods(int podSize, ForkJoinPool pool) {
+        checkPodSize(podSize);
+        int n = graph.size();
+        int[] label = new int[n];
+        int[] size = new int[n];
+        IntList active = new IntList(n);
+        for (int v = 0; v < n; v++) {
+            label[v] = v;
+            size[v] = 1;
+            active.add(v);
+        }
+        propagate(label, size, podSize, active, pool);
+        return Pods.fromLabels(graph, podSize, label);
+    }
+
+    /**
+     * Improves pods of this formation's graph with label propagation, every student active at first.
+     * Pods only gain internal weight, so refining grown pods never does worse than growPods.
+     *
+     * @param pods The pods to start from, over this formation's graph.
+     * @param pool The pool that proposes moves.
+     * @return The refined pods, with the same capacity, numbered by their smallest student id.
+     */
+    public Pods refinePods(Pods pods, ForkJoinPool pool) {
+        int n = graph.size();
+        int[] label = new int[n];
+        int[] size = new int[n];
+        IntList active = new IntList(n);
+        for (int v = 0; v < n; v++) {
+            int pod = pods.podOf(graph.studentAt(v).getName());
+            label[v] = pods.members[pods.start[pod]];
+            size[label[v]]++;
+            active.add(v);
+        }
+        propagate(label, size, pods.capacity(), active, pool);
+        return Pods.fromLabels(graph, pods.capacity(), label);
+    }
+
+    /**
+     * Updates the pods of an earlier graph version for this formation's graph. Students that are
+     * new or listed as changed start in pods of their own; everyone else keeps the pod they had,
+     * minus the students that left it. Propagation then runs only from the changed students,
+     * their neighbours and the remaining members of pods that lost someone. The result is a
+     * local optimum near the previous pods, not necessarily what propagatePods would give.
+     *
+     * @param previous The pods of the earlier graph.
+     * @param changed  The names of the students whose attributes, roommate or edges changed since.
+     * @param pool     The pool that proposes moves.
+     * @return The updated pods, with the previous capacity, numbered by their smallest student id.
+     */
+    public Pods repod(Pods previous, Collection<String> changed, ForkJoinPool pool) {
+        int n = graph.size();
+        Set<String> changedNames = new HashSet<>(changed);
+        int[] label = new int[n];
+        int[] size = new int[n];
+        // The smallest new id kept from each previous pod becomes that pod's label.
+        int[] labelOfPod = new int[previous.count()];
+        int[] kept = new int[previous.count()];
+        Arrays.fill(labelOfPod, -1);
+        boolean[] fresh = new boolean[n];
+
+        for (int v = 0; v < n; v++) {
+            String name = graph.studentAt(v).getName();
+            int pod = changedNames.contains(name) ? -1 : previous.podOf(name);
+            if (pod < 0) {
+                fresh[v] = true;
+                label[v] = v;
+            } else {
+                if (labelOfPod[pod] < 0) labelOfPod[pod] = v;
+                label[v] = labelOfPod[pod];
+                kept[pod]++;
+            }
+            size[label[v]]++;
+        }
+
+        boolean[] marked = new boolean[n];
+        IntList active = new IntList();
+        for (int v = 0; v < n; v++) {
+            if (fresh[v]) {
+                markActive(v, marked, active);
+                for (int e = graph.edgeStart(v); e < graph.edgeEnd(v); e++) {
+                    markActive(graph.neighborAt(e), marked, active);
+                }
+            } else {
+                int pod = previous.podOf(graph.studentAt(v).getName());
+                if (kept[pod] < previous.size(pod)) markActive(v, marked, active);
+            }
+        }
+        active.sort();
+
+        propagate(label, size, previous.capacity(), active, pool);
+        return Pods.fromLabels(graph, previous.capacity(), label);
+    }
+
+    private static void checkPodSize(int podSize) {
+        if (podSize < 1) throw new IllegalArgumentException("Pod size must be at least 1, got " + podSize + ".");
+    }
+
+    private static void markActive(int v, boolean[] marked, IntList active) {
+        if (!marked[v]) {
+            marked[v] = true;
+            active.add(v);
+        }
+    }
+
+    /**
+     * Runs rounds of label propagation from the given active students until no move is
+     * applied or MAX_ROUNDS is reached. The active list must be in ascending id order.
+     *
+     * A round splits the active students into CLASSES classes by a hash of their id and runs
+     * one step per class, in sequence, so each step sees the labels left by the steps before
+     * it. A step has three parallel passes and one short serial one. Every student of the class
+     * proposes its best pod against the labels at the start of the step, with the gain the
+     * move would bring on its own. Two adjacent proposals conflict when one student leaves the
+     * pod the other joins, or joins the pod the other leaves: applied together, they lose the
+     * weight of their edge once for each such overlap. That loss is charged to the higher id of
+     * the pair, and a proposal whose gain does not exceed its charges waits for the next round.
+     * The rest are applied as they stand, in id order, skipping any whose pod has filled up
+     * meanwhile. Any other overlap of two moves only adds weight, so the total weight inside
+     * pods still rises every step, and the lowest proposer of a step moves unless its pod filled
+     * up. The movers, their neighbours and the students that waited are marked, and after the
+     * last class they are collected as the next active list.
+     */
+    private void propagate(int[] label, int[] size, int capacity, IntList active, ForkJoinPool pool) {
+        int n = graph.size();
+        ThreadLocal<int[]> scratch = ThreadLocal.withInitial(() -> new int[n]);
+        // target[v] is v's proposal this round, or -1; it is reset when the next active list is collected.
+        int[] target = new int[n];
+        Arrays.fill(target, -1);
+        int[] gain = new int[n];
+        boolean[] marked = new boolean[n];
+        int chunks = (n + GRAIN - 1) / GRAIN;
+        IntList[] parts = new IntList[chunks];
+
+        for (int round = 0; round < MAX_ROUNDS && !active.isEmpty(); round++) {
+            // Spreading the active students over classes keeps most neighbours out of each other's step.
+            IntList[] classes = new IntList[CLASSES];
+            for (int c = 0; c < CLASSES; c++) {
+                classes[c] = new IntList();
+            }
+            for (int k = 0; k < active.size(); k++) {
+                int v = active.get(k);
+                classes[(v * 0x9E3779B9) >>> (32 - CLASS_BITS)].add(v);
+            }
+
+            int moves = 0;
+            for (IntList members : classes) {
+                moves += step(members.toArray(), label, size, capacity, target, gain, marked, scratch, pool);
+            }
+            if (moves == 0) break;
+
+            pool.invoke(new RangeTask(0, chunks, 1, (from, to) -> {
+                for (int c = from; c < to; c++) {
+                    IntList part = new IntList();
+                    for (int v = c * GRAIN; v < Math.min(n, (c + 1) * GRAIN); v++) {
+                        if (marked[v]) part.add(v);
+                        marked[v] = false;
+                    }
+                    parts[c] = part;
+                }
+            }));
+
+            IntList next = new IntList();
+            for (IntList part : parts) {
+                for (int k = 0; k < part.size(); k++) {
+                    next.add(part.get(k));
+                }
+            }
+            active = next;
+        }
+    }
+
+    /**
+     * Proposes and applies the moves of one class of active students, in ascending id order,
+     * and marks the movers, their neighbours and the students that waited.
+     *
+     * @return The number of students that moved.
+     */
+    private int step(int[] ids, int[] label, int[] size, int capacity, int[] target, int[] gain,
+                     boolean[] marked, ThreadLocal<int[]> scratch, ForkJoinPool pool) {
+        pool.invoke(new RangeTask(0, ids.length, GRAIN, (from, to) -> {
+            // bestPod clears the sums after each student, so a worker can reuse its scratch array.
+            int[] weightTo = scratch.get();
+            IntList touched = new IntList();
+            for (int k = from; k < to; k++) {
+                target[ids[k]] = bestPod(graph, ids[k], label, size, capacity, weightTo, touched, gain);
+            }
+        }));
+
+        boolean[] waits = new boolean[ids.length];
+        pool.invoke(new RangeTask(0, ids.length, GRAIN, (from, to) -> {
+            for (int k = from; k < to; k++) {
+                waits[k] = gain[ids[k]] <= lossToLowerProposals(ids[k], label, target);
+            }
+        }));
+
+        IntList moved = new IntList();
+        for (int k = 0; k < ids.length; k++) {
+            int v = ids[k];
+            int to = target[v];
+            // Every loss check has run, so the proposal can be cleared for the next step.
+            target[v] = -1;
+            if (to < 0) continue;
+            if (waits[k] || size[to] >= capacity) {
+                marked[v] = true;
+                continue;
+            }
+            size[label[v]]--;
+            size[to]++;
+            label[v] = to;
+            moved.add(v);
+        }
+
+        // Every mover marks the same value, so overlapping neighbourhoods can be marked concurrently.
+        pool.invoke(new RangeTask(0, moved.size(), GRAIN, (from, to) -> {
+            for (int k = from; k < to; k++) {
+                int v = moved.get(k);
+                marked[v] = true;
+                for (int e = graph.edgeStart(v); e < graph.edgeEnd(v); e++) {
+                    marked[graph.neighborAt(e)] = true;
+                }
+            }
+        }));
+        return moved.size();
+    }
+
+    // Sums the edge weight v's move could lose to lower-id neighbours that leave the pod v joins or join the pod v leaves.
+    private int lossToLowerProposals(int v, int[] label, int[] target) {
+        if (target[v] < 0) return 0;
+        int loss = 0;
+        for (int e = graph.edgeStart(v); e < graph.edgeEnd(v); e++) {
+            int u = graph.neighborAt(e);
+            if (u >= v || target[u] < 0) continue;
+            if (label[u] == target[v]) loss += graph.weightAt(e);
+            if (target[u] == label[v]) loss += graph.weightAt(e);
+        }
+        return loss;
+    }
+
+    /**
+     * Finds the pod with room a student is most strongly connected to, lowest label on ties.
+     * weightTo must be all zeros, and is left that way. When a pod is found, gain[v] is set to
+     * how much more weight v has to it than to its current pod.
+     *
+     * @return The pod, or -1 if no pod with room beats the student's current pod.
+     */
+    private static int bestPod(CompactStudentGraph graph, int v, int[] label, int[] size, int capacity,
+                               int[] weightTo, IntList touched, int[] gain) {
+        int current = label[v];
+        for (int e = graph.edgeStart(v); e < graph.edgeEnd(v); e++) {
+            int pod = label[graph.neighborAt(e)];
+            if (weightTo[pod] == 0) touched.add(pod);
+            weightTo[pod] += graph.weightAt(e);
+        }
+
+        int best = -1;
+        int bestWeight = weightTo[current];
+        for (int t = 0; t < touched.size(); t++) {
+            int pod = touched.get(t);
+            if (pod == current || size[pod] >= capacity) continue;
+            if (weightTo[pod] > bestWeight || (weightTo[pod] == bestWeight && best >= 0 && pod < best)) {
+                best = pod;
+                bestWeight = weightTo[pod];
+            }
+        }
+
+        if (best >= 0) gain[v] = bestWeight - weightTo[current];
+        for (int t = 0; t < touched.size(); t++) {
+            weightTo[touched.get(t)] = 0;
+        }
+        touched.clear();
+        return best;
+    }
+
+    // A piece of work over a range of indices, run by RangeTask.
+    private interface RangeBody {
+        void run(int from, int to);
+    }
+
+    /**
+     * Fork/join task that splits an index range until it holds at most grain indices,
+     * then runs the body over each piece.
+     */
+    private static class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int grain;
+        private final transient RangeBody body;
+
+        RangeTask(int from, int to, int grain, RangeBody body) {
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > grain) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RangeTask(from, mid, grain, body), new RangeTask(mid, to, grain, body));
+                return;
+            }
+            body.run(from, to);
+        }
+    }
+}
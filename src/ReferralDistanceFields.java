@@ -0,0 +1,145 @@
+import java.util.*;
+
+/**
+ * Cache of precomputed referral distance fields, one per company.
+ * A field is built by a single multi-source Dijkstra that starts from every holder of the
+ * company at distance 0 and runs over the inverted edge weights. Because the graph is
+ * undirected, the distance of a student in the field is the cost of its best referral path,
+ * and following the stored next hops walks that path in O(path length).
+ *
+ * Fields are built lazily on first query and evicted least-recently-used once their total
+ * size exceeds the memory budget. The cache belongs to one CompactStudentGraph, so rebuilding
+ * or changing the StudentGraph discards all of its fields.
+ */
+public class ReferralDistanceFields {
+    // Each field holds an int distance and an int next hop per student.
+    private static final int BYTES_PER_STUDENT = 8;
+
+    public static final long DEFAULT_BUDGET_BYTES = 64L << 20;
+
+    private final CompactStudentGraph graph;
+    private final long budgetBytes;
+    private final LinkedHashMap<Integer, Field> fields;
+    private long usedBytes;
+
+    /**
+     * Distance and next-hop arrays for one company.
+     */
+    public static class Field {
+        private final int[] dist;
+        private final int[] next;
+
+        Field(int[] dist, int[] next) {
+            this.dist = dist;
+            this.next = next;
+        }
+
+        // Returns the referral cost from a student, or Integer.MAX_VALUE if no holder is reachable.
+        public int distance(int studentId) {
+            return dist[studentId];
+        }
+
+        // Returns the next student on the best path, or -1 if the student is a holder or unreachable.
+        public int nextHop(int studentId) {
+            return next[studentId];
+        }
+    }
+
+    /**
+     * Constructs an empty cache for a graph.
+     *
+     * @param graph       The graph the fields are computed over.
+     * @param budgetBytes The total size the cached fields may occupy before eviction.
+     */
+    public ReferralDistanceFields(CompactStudentGraph graph, long budgetBytes) {
+        this.graph = graph;
+        this.budgetBytes = budgetBytes;
+        this.fields = new LinkedHashMap<>(16, 0.75f, true);
+        this.usedBytes = 0;
+    }
+
+    /**
+     * Returns the distance field of a company, building and caching it if needed.
+     *
+     * @param companyId The dense id of the company in the graph's CompanyIndex.
+     * @return The field for that company.
+     */
+    public Field field(int companyId) {
+        synchronized (this) {
+            Field cached = fields.get(companyId);
+            if (cached != null) return cached;
+        }
+
+        // Built outside the lock so one slow build does not stall queries for cached companies.
+        Field built = build(companyId);
+
+        synchronized (this) {
+            Field cached = fields.get(companyId);
+            if (cached != null) return cached;
+
+            fields.put(companyId, built);
+            usedBytes += (long) graph.size() * BYTES_PER_STUDENT;
+            Iterator<Map.Entry<Integer, Field>> eldest = fields.entrySet().iterator();
+            while (usedBytes > budgetBytes && fields.size() > 1) {
+                eldest.next();
+                eldest.remove();
+                usedBytes -= (long) graph.size() * BYTES_PER_STUDENT;
+            }
+            return built;
+        }
+    }
+
+    // Returns the number of fields currently cached.
+    public synchronized int cachedCount() {
+        return fields.size();
+    }
+
+    // Drops every cached field.
+    public synchronized void invalidate() {
+        fields.clear();
+        usedBytes = 0;
+    }
+
+    /**
+     * Computes the distance field of a company without caching it.
+     * Used by batch jobs so a sweep over many companies does not evict the online working set.
+     *
+     * @param companyId The dense id of the company in the graph's CompanyIndex.
+     * @return A freshly built field.
+     */
+    public Field compute(int companyId) {
+        return build(companyId);
+    }
+
+    // Multi-source Dijkstra from all holders of the company.
+    private Field build(int companyId) {
+        int n = graph.size();
+        int[] dist = new int[n];
+        int[] next = new int[n];
+        Arrays.fill(dist, Integer.MAX_VALUE);
+        Arrays.fill(next, -1);
+
+        CompanyIndex companies = graph.companyIndex();
+        ConnectionScorer scorer = graph.scorer();
+        IndexedMinHeap heap = new IndexedMinHeap(n);
+        for (int h = companies.nextHolder(companyId, 0); h >= 0; h = companies.nextHolder(companyId, h + 1)) {
+            dist[h] = 0;
+            heap.insertOrDecrease(h, 0);
+        }
+
+        while (!heap.isEmpty()) {
+            int current = heap.poll();
+            int currentDist = dist[current];
+            for (int e = graph.edgeStart(current); e < graph.edgeEnd(current); e++) {
+                int neighbor = graph.neighborAt(e);
+                int newDist = currentDist + scorer.referralCost(graph.weightAt(e));
+                if (newDist < dist[neighbor]) {
+                    dist[neighbor] = newDist;
+                    next[neighbor] = current;
+                    heap.insertOrDecrease(neighbor, newDist);
+                }
+            }
+        }
+        return new Field(dist, next);
+    }
+}
@@ -1,11 +1,33 @@
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 /**
  * Implements Dijkstra's algorithm to find referral paths between students.
  * Used to find the "shortest path" (strongest connection chain) to a specific internship.
+ * The search runs over the dense ids of the graph's CompactStudentGraph, using primitive
+ * distance arrays and an indexed heap that are reused by each thread between queries.
  */
 public class ReferralPathFinder {
+    private static final ThreadLocal<SearchScratch> SCRATCH = ThreadLocal.withInitial(SearchScratch::new);
+    private static final ThreadLocal<SearchScratch> REVERSE_SCRATCH = ThreadLocal.withInitial(SearchScratch::new);
+
     private StudentGraph graph;
+    private Strategy strategy;
+
+    /**
+     * How a query is answered.
+     * SEARCH runs Dijkstra outward from the start on every call.
+     * DISTANCE_FIELD reads the path from a cached per-company field, which is built once by a
+     * reverse search from all holders and then serves every start in O(path length).
+     * BIDIRECTIONAL grows one search from the start and one from all holders at once and stops
+     * when the two frontiers can no longer improve the best meeting point.
+     */
+    public enum Strategy {
+        SEARCH,
+        DISTANCE_FIELD,
+        BIDIRECTIONAL
+    }
 
     /**
      * Constructs a ReferralPathFinder for a given graph.
@@ -13,7 +35,18 @@ public class ReferralPathFinder {
      * @param graph The StudentGraph to search through.
      */
     public ReferralPathFinder(StudentGraph graph) {
+        this(graph, Strategy.SEARCH);
+    }
+
+    /**
+     * Constructs a ReferralPathFinder for a given graph and query strategy.
+     *
+     * @param graph    The StudentGraph to search through.
+     * @param strategy How queries are answered.
+     */
+    public ReferralPathFinder(StudentGraph graph, Strategy strategy) {
         this.graph = graph;
+        this.strategy = strategy;
     }
 
     /**
@@ -33,63 +66,437 @@ public class ReferralPathFinder {
 
             return path;
         }
-        
-        Map<UniversityStudent, Integer> dist = new HashMap<>();
-        Map<UniversityStudent, UniversityStudent> prev = new HashMap<>();
 
-        Comparator<UniversityStudent> comp = new Comparator<UniversityStudent>() {
-            @Override
-            public int compare(UniversityStudent a, UniversityStudent b) {
-                return Integer.compare(dist.getOrDefault(a, Integer.MAX_VALUE), dist.getOrDefault(b, Integer.MAX_VALUE));
-            }
-        };
-        PriorityQueue<UniversityStudent> minHeap = new PriorityQueue<>(comp);
-        
-        for (UniversityStudent s : graph.getAllNodes()) {
-            dist.put(s, Integer.MAX_VALUE);
-            prev.put(s, null);
-        }
-        
-        dist.put(start, 0);
-        minHeap.add(start);
-        
-        UniversityStudent target = null;
-        
-        while (!minHeap.isEmpty()) {
-            UniversityStudent current = minHeap.poll();
-            
-            if (current.getPreviousInternships().contains(targetCompany) && !current.equals(start)) {
+        CompactStudentGraph g = graph.compact();
+        int source = g.idOf(start);
+        if (source < 0) return new ArrayList<>();
+
+        // Nobody has interned at the company, so no path can exist.
+        CompanyIndex companies = g.companyIndex();
+        int company = companies.companyId(targetCompany);
+        if (company < 0) return new ArrayList<>();
+
+        if (strategy == Strategy.DISTANCE_FIELD) {
+            return followField(g, g.distanceFields().field(company), source);
+        }
+        if (strategy == Strategy.BIDIRECTIONAL) {
+            return searchBidirectional(g, companies, company, source);
+        }
+        return search(g, companies, company, source);
+    }
+
+    // Dijkstra from the start until the first holder of the company is settled.
+    private List<UniversityStudent> search(CompactStudentGraph g, CompanyIndex companies, int company, int source) {
+        SearchScratch scratch = SCRATCH.get();
+        scratch.prepare(g.size());
+
+        int target = runSearch(g, companies, company, source, scratch);
+        if (target == -1) return new ArrayList<>();
+
+        List<UniversityStudent> path = new ArrayList<>();
+        for (int v = target; v != -1; v = scratch.prev[v]) {
+            path.add(g.studentAt(v));
+        }
+        Collections.reverse(path);
+
+        return path;
+    }
+
+    // Runs Dijkstra on prepared scratch and returns the first holder settled, or -1.
+    // Nodes blocked in the current epoch are never entered, and neither are edges from the
+    // source to neighbours in blockedNext; both are only set by the top-K search.
+    private static int runSearch(CompactStudentGraph g, CompanyIndex companies, int company, int source, SearchScratch scratch) {
+        ConnectionScorer scorer = g.scorer();
+        scratch.setDistance(source, 0, -1);
+        scratch.heap.insertOrDecrease(source, 0);
+
+        int target = -1;
+
+        while (!scratch.heap.isEmpty()) {
+            int current = scratch.heap.poll();
+            scratch.settled++;
+
+            if (current != source && companies.holds(company, current)) {
                 target = current;
                 break;
             }
-            
-            int currentDist = dist.get(current);
-            if (currentDist == Integer.MAX_VALUE) continue;
-            
-            for (StudentGraph.Edge edge : graph.getNeighbors(current)) {
-                int invertedWeight = 10 - edge.weight;
-                if (invertedWeight < 1) invertedWeight = 1;
-
-                int newDist = currentDist + invertedWeight;
-                if (newDist < dist.get(edge.neighbor)) {
-                    dist.put(edge.neighbor, newDist);
-                    prev.put(edge.neighbor, current);
-
-                    minHeap.add(edge.neighbor);
+
+            int currentDist = scratch.dist[current];
+            for (int e = g.edgeStart(current); e < g.edgeEnd(current); e++) {
+                int neighbor = g.neighborAt(e);
+                if (scratch.blocked[neighbor] == scratch.epoch) continue;
+                if (current == source && scratch.blockedNext[neighbor] == scratch.epoch) continue;
+
+                int newDist = currentDist + scorer.referralCost(g.weightAt(e));
+                if (newDist < scratch.distance(neighbor)) {
+                    scratch.setDistance(neighbor, newDist, current);
+                    scratch.heap.insertOrDecrease(neighbor, newDist);
+                }
+            }
+        }
+        scratch.heap.clear();
+
+        return target;
+    }
+
+    /**
+     * Finds up to k distinct referral paths from a start to holders of a company, cheapest first,
+     * using Yen's algorithm on top of the primitive Dijkstra. Work stops at the deadline and the
+     * paths confirmed so far are returned, which keeps tail latency bounded on large graphs.
+     *
+     * @param start         The student initiating the search.
+     * @param targetCompany The name of the company to find a referral for.
+     * @param k             The maximum number of paths to return.
+     * @param deadlineNanos The System.nanoTime() value after which no new spur searches are started.
+     * @return The paths found, in increasing cost order; empty if there is no path.
+     */
+    public List<List<UniversityStudent>> findTopKReferralPaths(UniversityStudent start, String targetCompany, int k, long deadlineNanos) {
+        List<List<UniversityStudent>> result = new ArrayList<>();
+        if (start == null || k <= 0) return result;
+
+        if (start.getPreviousInternships().contains(targetCompany)) {
+            result.add(new ArrayList<>(Collections.singletonList(start)));
+            return result;
+        }
+
+        CompactStudentGraph g = graph.compact();
+        int source = g.idOf(start);
+        if (source < 0) return result;
+
+        CompanyIndex companies = g.companyIndex();
+        int company = companies.companyId(targetCompany);
+        if (company < 0) return result;
+
+        SearchScratch scratch = SCRATCH.get();
+        scratch.prepare(g.size());
+        int first = runSearch(g, companies, company, source, scratch);
+        if (first == -1) return result;
+
+        List<CandidatePath> accepted = new ArrayList<>();
+        accepted.add(CandidatePath.fromSearch(scratch, first, null, 0));
+        PriorityQueue<CandidatePath> candidates = new PriorityQueue<>();
+        Set<CandidatePath> seen = new HashSet<>(accepted);
+
+        search:
+        while (accepted.size() < k) {
+            CandidatePath previous = accepted.get(accepted.size() - 1);
+
+            for (int i = 0; i < previous.nodes.length - 1; i++) {
+                if (System.nanoTime() > deadlineNanos) break search;
+
+                int spur = previous.nodes[i];
+                scratch.prepare(g.size());
+
+                // Block the edges already used after this root, and the root itself.
+                for (CandidatePath path : accepted) {
+                    if (path.nodes.length > i + 1 && path.sharesRoot(previous, i)) {
+                        scratch.blockedNext[path.nodes[i + 1]] = scratch.epoch;
+                    }
+                }
+                for (int r = 0; r < i; r++) {
+                    scratch.blocked[previous.nodes[r]] = scratch.epoch;
+                }
+
+                int target = runSearch(g, companies, company, spur, scratch);
+                if (target == -1) continue;
+
+                CandidatePath candidate = CandidatePath.fromSearch(scratch, target, previous, i);
+                if (seen.add(candidate)) candidates.add(candidate);
+            }
+
+            if (candidates.isEmpty()) break;
+            accepted.add(candidates.poll());
+        }
+
+        for (CandidatePath path : accepted) {
+            List<UniversityStudent> students = new ArrayList<>(path.nodes.length);
+            for (int v : path.nodes) {
+                students.add(g.studentAt(v));
+            }
+            result.add(students);
+        }
+        return result;
+    }
+
+    /**
+     * A referral path over dense ids with the cumulative cost at every node, ordered by total cost.
+     */
+    private static class CandidatePath implements Comparable<CandidatePath> {
+        final int[] nodes;
+        final int[] costs;
+
+        CandidatePath(int[] nodes, int[] costs) {
+            this.nodes = nodes;
+            this.costs = costs;
+        }
+
+        // Joins root[0..spurIndex] with the path the last search found from root[spurIndex] to target.
+        static CandidatePath fromSearch(SearchScratch scratch, int target, CandidatePath root, int spurIndex) {
+            int spurLength = 0;
+            for (int v = target; v != -1; v = scratch.prev[v]) {
+                spurLength++;
+            }
+
+            int rootLength = root == null ? 0 : spurIndex;
+            int rootCost = root == null ? 0 : root.costs[spurIndex];
+            int[] nodes = new int[rootLength + spurLength];
+            int[] costs = new int[rootLength + spurLength];
+            if (root != null) {
+                System.arraycopy(root.nodes, 0, nodes, 0, rootLength);
+                System.arraycopy(root.costs, 0, costs, 0, rootLength);
+            }
+
+            int k = nodes.length - 1;
+            for (int v = target; v != -1; v = scratch.prev[v]) {
+                nodes[k] = v;
+                costs[k--] = rootCost + scratch.dist[v];
+            }
+            return new CandidatePath(nodes, costs);
+        }
+
+        int cost() {
+            return costs[costs.length - 1];
+        }
+
+        // Returns true if both paths visit the same nodes up to and including index i.
+        boolean sharesRoot(CandidatePath other, int i) {
+            for (int r = 0; r <= i; r++) {
+                if (nodes[r] != other.nodes[r]) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int compareTo(CandidatePath other) {
+            if (cost() != other.cost()) return Integer.compare(cost(), other.cost());
+            return Integer.compare(nodes.length, other.nodes.length);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof CandidatePath && Arrays.equals(nodes, ((CandidatePath) obj).nodes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(nodes);
+        }
+    }
+
+    // Searches forward from the start and backward from every holder, always advancing the side
+    // with the smaller frontier key. Once the two frontier keys add up to at least the best
+    // meeting cost found, no unsettled node can lie on a cheaper path, so the search stops.
+    private List<UniversityStudent> searchBidirectional(CompactStudentGraph g, CompanyIndex companies, int company, int source) {
+        ConnectionScorer scorer = g.scorer();
+        SearchScratch forward = SCRATCH.get();
+        SearchScratch backward = REVERSE_SCRATCH.get();
+        forward.prepare(g.size());
+        backward.prepare(g.size());
+
+        forward.setDistance(source, 0, -1);
+        forward.heap.insertOrDecrease(source, 0);
+        for (int h = companies.nextHolder(company, 0); h >= 0; h = companies.nextHolder(company, h + 1)) {
+            backward.setDistance(h, 0, -1);
+            backward.heap.insertOrDecrease(h, 0);
+        }
+
+        int best = Integer.MAX_VALUE;
+        int meetForward = -1;
+        int meetBackward = -1;
+
+        while (!forward.heap.isEmpty() && !backward.heap.isEmpty()) {
+            if ((long) forward.heap.peekKey() + backward.heap.peekKey() >= best) break;
+
+            boolean fromStart = forward.heap.peekKey() <= backward.heap.peekKey();
+            SearchScratch side = fromStart ? forward : backward;
+            SearchScratch other = fromStart ? backward : forward;
+
+            int current = side.heap.poll();
+            side.settled++;
+            int currentDist = side.dist[current];
+
+            for (int e = g.edgeStart(current); e < g.edgeEnd(current); e++) {
+                int neighbor = g.neighborAt(e);
+                int cost = scorer.referralCost(g.weightAt(e));
+                int newDist = currentDist + cost;
+                if (newDist < side.distance(neighbor)) {
+                    side.setDistance(neighbor, newDist, current);
+                    side.heap.insertOrDecrease(neighbor, newDist);
+                }
+
+                int otherDist = other.distance(neighbor);
+                if (otherDist != Integer.MAX_VALUE && (long) newDist + otherDist < best) {
+                    best = newDist + otherDist;
+                    meetForward = fromStart ? current : neighbor;
+                    meetBackward = fromStart ? neighbor : current;
                 }
             }
         }
-        
-        if (target == null) return new ArrayList<>();
-        
+        forward.settled += backward.settled;
+        forward.heap.clear();
+        backward.heap.clear();
+
+        if (meetForward == -1) return new ArrayList<>();
+
         List<UniversityStudent> path = new ArrayList<>();
-        UniversityStudent current = target;
+        for (int v = meetForward; v != -1; v = forward.prev[v]) {
+            path.add(g.studentAt(v));
+        }
+        Collections.reverse(path);
+        for (int v = meetBackward; v != -1; v = backward.prev[v]) {
+            path.add(g.studentAt(v));
+        }
+
+        return path;
+    }
+
+    /**
+     * One (start, company) pair of a batch request. The index identifies the query in results,
+     * since results are delivered out of order.
+     */
+    public static class Query {
+        public final int index;
+        public final String startName;
+        public final String company;
+
+        public Query(int index, String startName, String company) {
+            this.index = index;
+            this.startName = startName;
+            this.company = company;
+        }
+    }
+
+    /**
+     * The answer to one batch query. The path is empty if the start is unknown or no path exists.
+     */
+    public static class Result {
+        public final Query query;
+        public final List<UniversityStudent> path;
 
-        while (current != null) {
-            path.add(0, current);
-            current = prev.get(current);
+        public Result(Query query, List<UniversityStudent> path) {
+            this.query = query;
+            this.path = path;
+        }
+    }
+
+    // Below this many queries for a company, a per-query search is cheaper than a distance field.
+    private static final int BATCH_FIELD_THRESHOLD = 4;
+
+    /**
+     * Answers many referral queries at once. Queries are grouped by company, each group shares
+     * one distance field (or one reused search scratch for small groups), and the groups run in
+     * parallel on the common ForkJoinPool. Each result is handed to the sink as soon as it is ready.
+     * If the sink throws, no further queries are started and the first exception is rethrown.
+     *
+     * @param queries The (start, company) pairs to answer.
+     * @param sink    Receives every result at most once; it may be called from several threads at once.
+     */
+    public void findReferralPaths(List<Query> queries, Consumer<Result> sink) {
+        Map<String, List<Query>> byCompany = new LinkedHashMap<>();
+        for (Query query : queries) {
+            byCompany.computeIfAbsent(query.company, c -> new ArrayList<>()).add(query);
+        }
+
+        CompactStudentGraph g = graph.compact();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        new ArrayList<>(byCompany.values()).parallelStream().forEach(group -> answerGroup(g, group, sink, failure));
+        if (failure.get() != null) throw failure.get();
+    }
+
+    // Answers all queries for one company, stopping once any group's sink has failed.
+    private void answerGroup(CompactStudentGraph g, List<Query> group, Consumer<Result> sink, AtomicReference<RuntimeException> failure) {
+        if (failure.get() != null) return;
+        CompanyIndex companies = g.companyIndex();
+        int company = companies.companyId(group.get(0).company);
+        ReferralDistanceFields.Field field = null;
+        if (company >= 0 && group.size() >= BATCH_FIELD_THRESHOLD) {
+            field = g.distanceFields().compute(company);
+        }
+
+        for (Query query : group) {
+            if (failure.get() != null) return;
+            UniversityStudent start = g.getStudent(query.startName);
+            List<UniversityStudent> path;
+            if (start == null) {
+                path = new ArrayList<>();
+            } else if (field != null && !start.getPreviousInternships().contains(query.company)) {
+                path = followField(g, field, g.idOf(start));
+            } else {
+                path = findReferralPath(start, query.company);
+            }
+            try {
+                sink.accept(new Result(query, path));
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns how many nodes the calling thread's last SEARCH or BIDIRECTIONAL search settled.
+     * Queries answered before a search starts, such as unknown companies, leave it unchanged.
+     *
+     * @return The number of heap pops of the last query on this thread.
+     */
+    public static int settledInLastQuery() {
+        return SCRATCH.get().settled;
+    }
+
+    // Walks the next hops of a precomputed field from the start to the nearest holder.
+    private static List<UniversityStudent> followField(CompactStudentGraph g, ReferralDistanceFields.Field field, int source) {
+        List<UniversityStudent> path = new ArrayList<>();
+        if (field.distance(source) == Integer.MAX_VALUE) return path;
+
+        for (int v = source; v != -1; v = field.nextHop(v)) {
+            path.add(g.studentAt(v));
         }
-        
         return path;
     }
+
+    /**
+     * Per-thread search state. Entries of dist and prev are only valid when their stamp
+     * equals the current epoch, so starting a new query is O(1) instead of O(V).
+     * The blocked arrays use the same epoch to mark nodes and spur edges a top-K search excludes.
+     */
+    private static class SearchScratch {
+        int[] dist = new int[0];
+        int[] prev = new int[0];
+        int[] stamp = new int[0];
+        int[] blocked = new int[0];
+        int[] blockedNext = new int[0];
+        int epoch;
+        int settled;
+        IndexedMinHeap heap = new IndexedMinHeap(0);
+
+        void prepare(int n) {
+            if (stamp.length < n) {
+                dist = new int[n];
+                prev = new int[n];
+                stamp = new int[n];
+                blocked = new int[n];
+                blockedNext = new int[n];
+                heap = new IndexedMinHeap(n);
+                epoch = 0;
+            }
+            settled = 0;
+            epoch++;
+            if (epoch == Integer.MAX_VALUE) {
+                Arrays.fill(stamp, 0);
+                Arrays.fill(blocked, 0);
+                Arrays.fill(blockedNext, 0);
+                epoch = 1;
+            }
+        }
+
+        int distance(int v) {
+            return stamp[v] == epoch ? dist[v] : Integer.MAX_VALUE;
+        }
+
+        void setDistance(int v, int d, int from) {
+            stamp[v] = epoch;
+            dist[v] = d;
+            prev[v] = from;
+        }
+    }
 }
@@ -0,0 +1,238 @@
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps a cohort's roommate matching current as students edit their preferences, join or leave.
+ * Proposals never cross a connected component of the preference graph, and GaleShapley queues
+ * each component's students in cohort order, so a component can be re-matched on its own with
+ * the same result a full run would give. An edit therefore re-matches only the components that
+ * contain the edited student before and after the edit.
+ *
+ * Matchings are published as immutable Assignment snapshots that share everything an edit did
+ * not change; readers never see a half-applied edit, and no student's roommate field is
+ * touched. Edits are serialized on the matcher.
+ */
+public class RoommateMatcher {
+    /**
+     * One published matching, by name. An edit publishes only the pairs it changed, as an
+     * overlay on the base of the previous assignment; the overlay is folded into a new base once
+     * it outgrows roughly the square root of the cohort, so publishing costs O(sqrt n) amortized
+     * instead of a copy of every pair. Nothing reachable from an assignment is modified after
+     * publication.
+     */
+    public static final class Assignment {
+        private final long version;
+        private final Map<String, String> base;
+        // Names whose roommate differs from base; a null value means unmatched.
+        private final Map<String, String> overlay;
+        private volatile Map<String, String> roommates;
+
+        private Assignment(long version, Map<String, String> base, Map<String, String> overlay) {
+            this.version = version;
+            this.base = base;
+            this.overlay = overlay;
+        }
+
+        Assignment(long version, Map<String, String> roommates) {
+            this(version, roommates, Collections.emptyMap());
+        }
+
+        // Returns the next assignment, with the given names now matched as in partners.
+        Assignment next(Collection<String> changed, Map<String, String> partners) {
+            Map<String, String> overlay = new HashMap<>(this.overlay);
+            for (String name : changed) {
+                String roommate = partners.get(name);
+                if (Objects.equals(base.get(name), roommate)) overlay.remove(name);
+                else overlay.put(name, roommate);
+            }
+            if (overlay.size() * (long) overlay.size() > 16L * Math.max(base.size(), 64)) {
+                return new Assignment(version + 1, new HashMap<>(partners));
+            }
+            return new Assignment(version + 1, base, overlay);
+        }
+
+        // Returns the number of edits applied before this assignment was published.
+        public long version() {
+            return version;
+        }
+
+        // Returns the roommate of a student, or null if unmatched or unknown.
+        public String roommateOf(String name) {
+            return overlay.containsKey(name) ? overlay.get(name) : base.get(name);
+        }
+
+        // Returns every matched student's roommate; both students of a pair appear as keys.
+        public Map<String, String> roommates() {
+            Map<String, String> all = roommates;
+            if (all == null) {
+                // Materialized on first use only, so edits that nobody lists stay cheap.
+                Map<String, String> merged = new HashMap<>(base);
+                for (Map.Entry<String, String> e : overlay.entrySet()) {
+                    if (e.getValue() == null) merged.remove(e.getKey());
+                    else merged.put(e.getKey(), e.getValue());
+                }
+                all = Collections.unmodifiableMap(merged);
+                roommates = all;
+            }
+            return all;
+        }
+    }
+
+    // Students in cohort order: insertion order, with an update keeping its student's place.
+    private final LinkedHashMap<String, UniversityStudent> students = new LinkedHashMap<>();
+    private final Map<String, Long> seqOf = new HashMap<>();
+    // Names listed in some present student's preferences, mapped to the students listing them.
+    private final Map<String, Set<String>> listedBy = new HashMap<>();
+    private final Map<String, String> partners = new HashMap<>();
+    private final AtomicReference<Assignment> published;
+    private long nextSeq = 0;
+
+    /**
+     * Matches a cohort as GaleShapley.assignRoommates would, without changing the students.
+     *
+     * @param cohort The students, in the order GaleShapley would queue them.
+     * @throws IllegalArgumentException If two students share a name or a student has none.
+     */
+    public RoommateMatcher(List<UniversityStudent> cohort) {
+        for (UniversityStudent s : cohort) {
+            if (s.getName() == null || students.containsKey(s.getName())) {
+                throw new IllegalArgumentException("Roommate matching needs a unique name for every student.");
+            }
+            insert(s);
+        }
+        rematch(students.keySet());
+        published = new AtomicReference<>(new Assignment(0, new HashMap<>(partners)));
+    }
+
+    // Returns the latest published matching.
+    public Assignment assignment() {
+        return published.get();
+    }
+
+    // Returns the students in cohort order.
+    public synchronized List<UniversityStudent> students() {
+        return new ArrayList<>(students.values());
+    }
+
+    /**
+     * Adds a student at the end of the cohort and re-matches its component.
+     *
+     * @param student The new student.
+     * @return The names whose roommate changed.
+     * @throws IllegalArgumentException If a student with the same name is already present.
+     */
+    public synchronized Set<String> add(UniversityStudent student) {
+        if (student.getName() == null || students.containsKey(student.getName())) {
+            throw new IllegalArgumentException("A student named " + student.getName() + " is already in the cohort.");
+        }
+        insert(student);
+        // Students that already listed the newcomer join its component through listedBy.
+        return rematchAndPublish(component(student.getName()));
+    }
+
+    /**
+     * Replaces a student, typically with new roommate preferences, keeping its place in the cohort.
+     *
+     * @param student The new version of the student, matched by name.
+     * @return The names whose roommate changed.
+     * @throws IllegalArgumentException If no student with that name is present.
+     */
+    public synchronized Set<String> update(UniversityStudent student) {
+        String name = student.getName();
+        if (!students.containsKey(name)) throw new IllegalArgumentException("No student named " + name + " in the cohort.");
+
+        Set<String> affected = component(name);
+        // Replacing the map entry in place keeps the student's position and seq.
+        unlist(students.put(name, student));
+        list(student);
+        affected.addAll(component(name));
+        return rematchAndPublish(affected);
+    }
+
+    /**
+     * Removes a student and re-matches the component it belonged to.
+     *
+     * @param name The name of the student to remove.
+     * @return The names whose roommate changed, including the removed student's if it was matched.
+     * @throws IllegalArgumentException If no student with that name is present.
+     */
+    public synchronized Set<String> remove(String name) {
+        if (!students.containsKey(name)) throw new IllegalArgumentException("No student named " + name + " in the cohort.");
+
+        Set<String> affected = component(name);
+        affected.remove(name);
+        delete(name);
+        Set<String> changed = rematch(affected);
+        if (partners.remove(name) != null) changed.add(name);
+        published.set(published.get().next(changed, partners));
+        return changed;
+    }
+
+    private void insert(UniversityStudent student) {
+        students.put(student.getName(), student);
+        seqOf.put(student.getName(), nextSeq++);
+        list(student);
+    }
+
+    private void delete(String name) {
+        seqOf.remove(name);
+        unlist(students.remove(name));
+    }
+
+    private void list(UniversityStudent student) {
+        for (String pref : student.getRoommatePreferences()) {
+            listedBy.computeIfAbsent(pref, key -> new HashSet<>()).add(student.getName());
+        }
+    }
+
+    private void unlist(UniversityStudent student) {
+        for (String pref : student.getRoommatePreferences()) {
+            Set<String> listers = listedBy.get(pref);
+            if (listers != null && listers.remove(student.getName()) && listers.isEmpty()) listedBy.remove(pref);
+        }
+    }
+
+    // Returns the present students connected to one by preferences in either direction.
+    private Set<String> component(String start) {
+        Set<String> seen = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        seen.add(start);
+        pending.add(start);
+        while (!pending.isEmpty()) {
+            String name = pending.poll();
+            for (String pref : students.get(name).getRoommatePreferences()) {
+                if (students.containsKey(pref) && seen.add(pref)) pending.add(pref);
+            }
+            for (String lister : listedBy.getOrDefault(name, Collections.emptySet())) {
+                if (seen.add(lister)) pending.add(lister);
+            }
+        }
+        return seen;
+    }
+
+    // Re-matches a union of components, returning the names whose roommate changed.
+    private Set<String> rematch(Collection<String> names) {
+        List<String> order = new ArrayList<>(names);
+        order.sort(Comparator.comparingLong(seqOf::get));
+        List<UniversityStudent> cohort = new ArrayList<>(order.size());
+        for (String name : order) {
+            cohort.add(students.get(name));
+        }
+
+        int[] partner = GaleShapley.partners(cohort);
+        Set<String> changed = new HashSet<>();
+        for (int i = 0; i < partner.length; i++) {
+            String name = order.get(i);
+            String roommate = partner[i] < 0 ? null : order.get(partner[i]);
+            String previous = roommate == null ? partners.remove(name) : partners.put(name, roommate);
+            if (!Objects.equals(previous, roommate)) changed.add(name);
+        }
+        return changed;
+    }
+
+    private Set<String> rematchAndPublish(Collection<String> names) {
+        Set<String> changed = rematch(names);
+        published.set(published.get().next(changed, partners));
+        return changed;
+    }
+}
@@ -0,0 +1,97 @@
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared, long-lived executor for FriendRequestThread and ChatThread work.
+ * On a JDK with virtual threads (21 and later) every task gets its own virtual thread, so
+ * thousands of simulated users can wait on locks or I/O at once without tying up platform
+ * threads. The JDK is probed by reflection, so this class still compiles and runs on Java 11;
+ * there it falls back to a fixed pool of daemon threads shared by every batch.
+ * Either way there is no per-batch pool to create and shut down.
+ */
+public final class SocialExecutor {
+    private static final int FALLBACK_THREADS = Math.max(16, 4 * Runtime.getRuntime().availableProcessors());
+    private static volatile SocialExecutor shared;
+
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+
+    private SocialExecutor(ExecutorService executor, boolean virtualThreads) {
+        this.executor = executor;
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Returns the process-wide executor, creating it on first use.
+     *
+     * @return The shared SocialExecutor.
+     */
+    public static SocialExecutor shared() {
+        SocialExecutor current = shared;
+        if (current == null) {
+            synchronized (SocialExecutor.class) {
+                current = shared;
+                if (current == null) {
+                    ExecutorService virtual = virtualThreadExecutor();
+                    current = virtual != null ? new SocialExecutor(virtual, true) : new SocialExecutor(fallbackPool(), false);
+                    shared = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    // Returns Executors.newVirtualThreadPerTaskExecutor() if this JDK has it enabled, otherwise null.
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            // Missing before Java 19, and a preview feature that throws on 19 and 20 unless enabled.
+            return null;
+        }
+    }
+
+    private static ExecutorService fallbackPool() {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(FALLBACK_THREADS, task -> {
+            Thread thread = new Thread(task, "social-" + count.incrementAndGet());
+            // Daemon threads, so the shared pool never keeps the JVM alive.
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Returns true if tasks run on virtual threads rather than the fallback pool.
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Submits one task.
+     *
+     * @param task The task to run.
+     * @return A future completed when the task finishes, or exceptionally if it throws.
+     */
+    public CompletableFuture<Void> submit(Runnable task) {
+        return CompletableFuture.runAsync(task, executor);
+    }
+
+    /**
+     * Submits a batch of tasks, which may run concurrently and in any order.
+     *
+     * @param tasks The tasks to run.
+     * @return A future completed when every task has finished; it completes exceptionally
+     *         if any task threw, but only after all of them have finished.
+     */
+    public CompletableFuture<Void> submitAll(Collection<? extends Runnable> tasks) {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[tasks.size()];
+        int i = 0;
+        for (Runnable task : tasks) {
+            futures[i++] = submit(task);
+        }
+        return CompletableFuture.allOf(futures);
+    }
+}
@@ -0,0 +1,333 @@
+import java.util.*;
+
+/**
+ * Irving's stable-roommates algorithm over dense student ids.
+ * Unlike GaleShapley, which runs bipartite proposals over a one-sided problem, this finds a
+ * matching with no blocking pair whenever one exists, and says so when none does.
+ *
+ * A pair is acceptable when each student lists the other; a student's rank of another is
+ * where that name first appears in its list, as in GaleShapley. Unknown names, repeats and
+ * the student's own name are ignored. Students whose lists empty out in phase one are
+ * unmatched in every stable matching.
+ *
+ * Both phases run in time linear in the total length of the acceptable lists, which is
+ * O(n^2) for complete lists: list pointers only move inwards, and the rotation search in
+ * phase two resumes from the surviving part of its path after each elimination.
+ */
+public class StableRoommates {
+
+    /**
+     * Assigns a stable matching if one exists. Every student's roommate is overwritten:
+     * set to its partner, or null if it is unmatched.
+     *
+     * @param students          The students to match; names must be unique.
+     * @param completeIfNoMatch If no stable matching exists, assign the greedy completion instead
+     *                          of leaving every roommate null.
+     * @return true if the assignment is a stable matching, false if none exists.
+     * @throws IllegalArgumentException If two students share a name or a student has none.
+     */
+    public static boolean assignRoommates(List<UniversityStudent> students, boolean completeIfNoMatch) {
+        Lists lists = Lists.build(students);
+        int[] partner = solve(lists);
+        boolean stable = partner != null;
+        if (!stable) {
+            partner = completeIfNoMatch ? greedy(lists) : unmatched(students.size());
+        }
+        for (int i = 0; i < students.size(); i++) {
+            students.get(i).setRoommate(partner[i] < 0 ? null : students.get(partner[i]));
+        }
+        return stable;
+    }
+
+    // Assigns a stable matching, or the greedy completion if none exists; returns whether it is stable.
+    public static boolean assignRoommates(List<UniversityStudent> students) {
+        return assignRoommates(students, true);
+    }
+
+    private static int[] unmatched(int n) {
+        int[] partner = new int[n];
+        Arrays.fill(partner, -1);
+        return partner;
+    }
+
+    /**
+     * Acceptable lists in CSR form. Entry e of student i, at start[i] + rank, names pref[e];
+     * mirror[e] is the entry for i in pref[e]'s list, so removing a pair marks both entries.
+     */
+    static final class Lists {
+        final int n;
+        final int[] start;
+        final int[] pref;
+        final int[] mirror;
+
+        private Lists(int n, int[] start, int[] pref, int[] mirror) {
+            this.n = n;
+            this.start = start;
+            this.pref = pref;
+            this.mirror = mirror;
+        }
+
+        /**
+         * Keeps the mutually acceptable first occurrences of a GaleShapley.PreferenceTable.
+         *
+         * @param students The students, whose positions become their ids.
+         * @return The acceptable lists.
+         * @throws IllegalArgumentException If two students share a name or a student has none.
+         */
+        static Lists build(List<UniversityStudent> students) {
+            GaleShapley.PreferenceTable table = GaleShapley.PreferenceTable.build(students);
+            if (table == null) throw new IllegalArgumentException("Stable roommates needs a unique name for every student.");
+
+            int n = students.size();
+            int[] compact = new int[table.target.length];
+            int[] start = new int[n + 1];
+            for (int i = 0; i < n; i++) {
+                start[i + 1] = start[i];
+                for (int e = table.start[i]; e < table.start[i + 1]; e++) {
+                    int t = table.target[e];
+                    boolean keep = t >= 0 && t != i && table.selfRank[e] == e - table.start[i] && table.reverseRank[e] >= 0;
+                    compact[e] = keep ? start[i + 1]++ : -1;
+                }
+            }
+
+            int[] pref = new int[start[n]];
+            int[] mirror = new int[start[n]];
+            for (int i = 0; i < n; i++) {
+                for (int e = table.start[i]; e < table.start[i + 1]; e++) {
+                    int c = compact[e];
+                    if (c < 0) continue;
+                    int t = table.target[e];
+                    pref[c] = t;
+                    // The first occurrence of i in t's list is kept too, since t's first mention of i is mutual.
+                    mirror[c] = compact[table.start[t] + table.reverseRank[e]];
+                }
+            }
+            return new Lists(n, start, pref, mirror);
+        }
+    }
+
+    /**
+     * Runs both phases of Irving's algorithm.
+     *
+     * @param lists The acceptable lists.
+     * @return Each student's partner id, or -1 if unmatched; null if no stable matching exists.
+     */
+    static int[] solve(Lists lists) {
+        return new Table(lists).solve();
+    }
+
+    /**
+     * The reduced preference table both phases shrink. Entries are never restored, so first
+     * only moves right, last only moves left, and each student's list is the undeleted
+     * entries between them.
+     */
+    private static final class Table {
+        private final Lists lists;
+        private final boolean[] deleted;
+        private final int[] first;
+        private final int[] second;
+        private final int[] last;
+        // Phase one: who holds i's proposal, and whose proposal i holds.
+        private final int[] proposedTo;
+        private final int[] holding;
+        private final IntList free = new IntList();
+
+        Table(Lists lists) {
+            this.lists = lists;
+            int n = lists.n;
+            this.deleted = new boolean[lists.pref.length];
+            this.first = new int[n];
+            this.second = new int[n];
+            this.last = new int[n];
+            this.proposedTo = new int[n];
+            this.holding = new int[n];
+            for (int i = 0; i < n; i++) {
+                first[i] = lists.start[i];
+                second[i] = lists.start[i] + 1;
+                last[i] = lists.start[i + 1] - 1;
+            }
+            Arrays.fill(proposedTo, -1);
+            Arrays.fill(holding, -1);
+        }
+
+        int[] solve() {
+            phaseOne();
+            if (!phaseTwo()) return null;
+
+            int[] partner = unmatched(lists.n);
+            for (int i = 0; i < lists.n; i++) {
+                if (!isEmpty(i)) partner[i] = lists.pref[first(i)];
+            }
+            return partner;
+        }
+
+        // Every student proposes down its list; a student holding a proposal drops everyone it ranks lower.
+        private void phaseOne() {
+            for (int i = lists.n - 1; i >= 0; i--) {
+                free.add(i);
+            }
+            while (free.size() > 0) {
+                int i = free.removeLast();
+                if (proposedTo[i] >= 0 || isEmpty(i)) continue;
+
+                int e = first(i);
+                int j = lists.pref[e];
+                int position = lists.mirror[e];
+                // Includes the proposal j currently holds, whose sender goes back on the free list.
+                for (int f = position + 1; f <= last[j]; f++) {
+                    if (!deleted[f]) delete(f);
+                }
+                last[j] = position;
+                holding[j] = i;
+                proposedTo[i] = j;
+            }
+        }
+
+        // Removes the pair behind an entry; a proposal between the two is withdrawn.
+        private void delete(int e) {
+            int other = lists.pref[e];
+            int owner = lists.pref[lists.mirror[e]];
+            deleted[e] = true;
+            deleted[lists.mirror[e]] = true;
+            withdraw(owner, other);
+            withdraw(other, owner);
+        }
+
+        private void withdraw(int proposer, int receiver) {
+            if (proposedTo[proposer] == receiver) {
+                proposedTo[proposer] = -1;
+                holding[receiver] = -1;
+                free.add(proposer);
+            }
+        }
+
+        /**
+         * Eliminates rotations until every list holds at most one entry.
+         * The walk p(k+1) = last(second(p(k))) is kept on a stack; when it meets itself, the cycle
+         * is a rotation, which is eliminated and popped, and the walk continues from what remains.
+         *
+         * @return false if a list empties, meaning no stable matching exists.
+         */
+        private boolean phaseTwo() {
+            int n = lists.n;
+            int[] pathIndex = new int[n];
+            Arrays.fill(pathIndex, -1);
+            IntList path = new IntList();
+            int scan = 0;
+
+            while (true) {
+                if (path.size() == 0) {
+                    while (scan < n && size(scan) < 2) scan++;
+                    if (scan == n) return true;
+                    pathIndex[scan] = 0;
+                    path.add(scan);
+                }
+
+                int x = path.get(path.size() - 1);
+                if (size(x) < 2) {
+                    // Shortened by the last elimination; the rest of the path is still valid.
+                    pathIndex[x] = -1;
+                    path.removeLast();
+                    continue;
+                }
+                int y = lists.pref[second(x)];
+                int next = lists.pref[last(y)];
+                if (pathIndex[next] < 0) {
+                    pathIndex[next] = path.size();
+                    path.add(next);
+                    continue;
+                }
+
+                int from = pathIndex[next];
+                int length = path.size() - from;
+                int[] members = new int[length];
+                int[] seconds = new int[length];
+                for (int k = 0; k < length; k++) {
+                    members[k] = path.get(from + k);
+                    seconds[k] = second(members[k]);
+                }
+                for (int k = length - 1; k >= 0; k--) {
+                    pathIndex[members[k]] = -1;
+                    path.removeLast();
+                }
+
+                // Each member's second choice now holds it, so drop everyone that second choice ranks lower.
+                for (int k = 0; k < length; k++) {
+                    int receiver = lists.pref[seconds[k]];
+                    int position = lists.mirror[seconds[k]];
+                    for (int f = position + 1; f <= last[receiver]; f++) {
+                        if (!deleted[f]) {
+                            deleted[f] = true;
+                            deleted[lists.mirror[f]] = true;
+                            if (isEmpty(lists.pref[f])) return false;
+                        }
+                    }
+                    last[receiver] = position;
+                }
+            }
+        }
+
+        private int first(int i) {
+            while (first[i] <= last[i] && deleted[first[i]]) first[i]++;
+            return first[i];
+        }
+
+        private int second(int i) {
+            int f = first(i);
+            if (second[i] <= f) second[i] = f + 1;
+            while (second[i] <= last[i] && deleted[second[i]]) second[i]++;
+            return second[i];
+        }
+
+        private int last(int i) {
+            while (last[i] >= first[i] && deleted[last[i]]) last[i]--;
+            return last[i];
+        }
+
+        private boolean isEmpty(int i) {
+            return first(i) > last(i);
+        }
+
+        // Returns 0, 1 or 2 for an empty list, a single entry, or two or more.
+        private int size(int i) {
+            if (isEmpty(i)) return 0;
+            return second(i) <= last[i] ? 2 : 1;
+        }
+    }
+
+    /**
+     * Heuristic completion for cohorts without a stable matching: acceptable pairs are taken
+     * greedily, best first by the worse of the two ranks, ties in list order. Runs in
+     * O(E log E) for E acceptable pairs; the result may have blocking pairs.
+     *
+     * @param lists The acceptable lists.
+     * @return Each student's partner id, or -1 if unmatched.
+     */
+    static int[] greedy(Lists lists) {
+        int n = lists.n;
+        int pairs = 0;
+        long[] keys = new long[lists.pref.length / 2];
+        for (int i = 0; i < n; i++) {
+            for (int e = lists.start[i]; e < lists.start[i + 1]; e++) {
+                int j = lists.pref[e];
+                if (j < i) continue;
+                int rank = e - lists.start[i];
+                int theirRank = lists.mirror[e] - lists.start[j];
+                keys[pairs++] = (long) Math.max(rank, theirRank) << 32 | e;
+            }
+        }
+        Arrays.sort(keys, 0, pairs);
+
+        int[] partner = unmatched(n);
+        for (int k = 0; k < pairs; k++) {
+            int e = (int) keys[k];
+            int j = lists.pref[e];
+            int i = lists.pref[lists.mirror[e]];
+            if (partner[i] < 0 && partner[j] < 0) {
+                partner[i] = j;
+                partner[j] = i;
+            }
+        }
+        return partner;
+    }
+}
@@ -0,0 +1,84 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe dictionary that assigns dense int codes to strings.
+ * Each distinct string is stored once and every later occurrence maps to the same code,
+ * so students can compare majors, companies and names as ints and share one String
+ * instance per value. Codes are never reused or removed; null is always code -1.
+ *
+ * Dictionaries come in a Scope, one per loaded cohort, so they are collected together with
+ * the cohort instead of growing for the life of the process.
+ */
+public class StringDictionary {
+    /**
+     * The dictionaries a cohort's students are encoded with. Codes are only comparable between
+     * students of the same scope. Each parsed roster, loaded snapshot and ApiServer test case
+     * load gets its own scope; a scope lives as long as any student that uses it.
+     */
+    public static final class Scope {
+        // Used by students constructed without a scope, such as hand-written test cases. It is
+        // never released: every string encoded in it stays for the life of the process.
+        public static final Scope SHARED = new Scope();
+
+        public final StringDictionary names = new StringDictionary();
+        public final StringDictionary genders = new StringDictionary();
+        public final StringDictionary majors = new StringDictionary();
+        public final StringDictionary companies = new StringDictionary();
+    }
+
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[16];
+    private volatile int size = 0;
+
+    /**
+     * Returns the code of a string, assigning the next free code if it is new.
+     *
+     * @param value The string to encode, or null.
+     * @return The code of the string, or -1 for null.
+     */
+    public int encode(String value) {
+        if (value == null) return -1;
+        Integer code = codes.get(value);
+        if (code != null) return code;
+
+        synchronized (this) {
+            code = codes.get(value);
+            if (code != null) return code;
+
+            int next = size;
+            String[] current = values;
+            if (next == current.length) {
+                current = Arrays.copyOf(current, next * 2);
+            }
+            current[next] = value;
+            values = current;
+            size = next + 1;
+            // Published last, so any thread that can see the code can also decode it.
+            codes.put(value, next);
+            return next;
+        }
+    }
+
+    // Returns the code of a string without assigning one, or -1 if it is null or unknown.
+    public int code(String value) {
+        if (value == null) return -1;
+        Integer code = codes.get(value);
+        return code == null ? -1 : code;
+    }
+
+    // Returns the string for a code, or null for -1.
+    public String decode(int code) {
+        return code < 0 ? null : values[code];
+    }
+
+    // Returns the canonical instance of a string, adding it to the dictionary if needed.
+    public String canonical(String value) {
+        return decode(encode(value));
+    }
+
+    // Returns the number of distinct strings in the dictionary.
+    public int size() {
+        return size;
+    }
+}
@@ -1,13 +1,29 @@
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Represents the network of students as a weighted graph.
  * Supports adding students, creating edges based on connection strength,
  * and traversing the graph.
+ *
+ * Every student has a sequence number: its position in the construction list, or the next
+ * free number when added later. Each adjacency list is ordered by neighbour sequence number,
+ * and a pair is scored from the student with the lower number, so after any series of
+ * addStudent, updateStudent and removeStudent calls the graph equals a fresh build over the
+ * remaining students in sequence order.
  */
 public class StudentGraph {
     private Map<UniversityStudent, List<Edge>> adjacencyList;
     private Map<String, UniversityStudent> studentMap;
+    private volatile CompactStudentGraph compact;
+    // The snapshot graph this one reads from until its Edge lists are first needed; null once expanded.
+    private volatile CompactStudentGraph lazy;
+    private ConnectionScorer scorer;
+    private List<UniversityStudent> bySeq;
+    private Map<String, Integer> seqOf;
+    private CandidateIndex liveIndex;
+    private Set<List<Edge>> sharedLists;
 
     /**
      * Inner class representing a weighted edge between two students.
@@ -27,6 +43,18 @@ public class StudentGraph {
         }
     }
 
+    /**
+     * Strategy used to discover which pairs of students are connected.
+     * PAIRWISE scores every pair; INDEXED only scores pairs that share a major, age,
+     * internship company or roommate link; PARALLEL does the indexed scoring on a ForkJoinPool.
+     * All modes produce identical adjacency lists, edge order included.
+     */
+    public enum BuildMode {
+        PAIRWISE,
+        INDEXED,
+        PARALLEL
+    }
+
     /**
      * Constructs the graph from a list of students.
      * Automatically adds all students as nodes and calculates edges between them.
@@ -34,33 +62,519 @@ public class StudentGraph {
      * @param students A list of UniversityStudent objects to populate the graph.
      */
     public StudentGraph(List<UniversityStudent> students) {
+        this(students, BuildMode.INDEXED);
+    }
+
+    /**
+     * Constructs the graph from a list of students using the given build strategy.
+     *
+     * @param students A list of UniversityStudent objects to populate the graph.
+     * @param mode     The strategy used to find connected pairs.
+     */
+    public StudentGraph(List<UniversityStudent> students, BuildMode mode) {
+        this(students, mode, ConnectionScorer.DEFAULT);
+    }
+
+    /**
+     * Constructs the graph from a list of students, scoring pairs with the given rules.
+     *
+     * @param students A list of UniversityStudent objects to populate the graph.
+     * @param mode     The strategy used to find connected pairs.
+     * @param scorer   The connection-strength rules; pairs scoring 0 or less are not connected.
+     */
+    public StudentGraph(List<UniversityStudent> students, BuildMode mode, ConnectionScorer scorer) {
+        this.scorer = scorer;
+        addNodes(students);
+
+        if (mode == BuildMode.PAIRWISE) {
+            buildPairwise(students);
+        } else if (mode == BuildMode.PARALLEL) {
+            buildParallel(students, ForkJoinPool.commonPool());
+        } else {
+            buildIndexed(students);
+        }
+    }
+
+    /**
+     * Constructs the graph in PARALLEL mode on a specific pool.
+     *
+     * @param students A list of UniversityStudent objects to populate the graph.
+     * @param pool     The pool that scores the row ranges.
+     */
+    public StudentGraph(List<UniversityStudent> students, ForkJoinPool pool) {
+        this(students, pool, ConnectionScorer.DEFAULT);
+    }
+
+    /**
+     * Constructs the graph in PARALLEL mode on a specific pool, scoring pairs with the given rules.
+     *
+     * @param students A list of UniversityStudent objects to populate the graph.
+     * @param pool     The pool that scores the row ranges.
+     * @param scorer   The connection-strength rules; pairs scoring 0 or less are not connected.
+     */
+    public StudentGraph(List<UniversityStudent> students, ForkJoinPool pool, ConnectionScorer scorer) {
+        this.scorer = scorer;
+        addNodes(students);
+        buildParallel(students, pool);
+    }
+
+    /**
+     * Wraps a compact graph without rescoring any pair, keeping it as this graph's compact()
+     * until the graph changes. Used when loading snapshots. Lookups are answered by the compact
+     * form; it is expanded into adjacency lists only when the graph is changed, compared or
+     * displayed. Until then getAllNodes lists students in id order.
+     *
+     * @param compact The graph to wrap.
+     */
+    public StudentGraph(CompactStudentGraph compact) {
+        this.scorer = compact.scorer();
+        this.compact = compact;
+        this.lazy = compact;
+    }
+
+    // Builds the adjacency lists of a graph wrapping a compact form, once.
+    private void expand() {
+        if (lazy == null) return;
+        synchronized (this) {
+            CompactStudentGraph source = lazy;
+            if (source == null) return;
+            addNodes(source.getAllNodes());
+            for (int i = 0; i < source.size(); i++) {
+                List<Edge> edges = adjacencyList.get(source.studentAt(i));
+                for (int e = source.edgeStart(i); e < source.edgeEnd(i); e++) {
+                    edges.add(new Edge(source.studentAt(source.neighborAt(e)), source.weightAt(e)));
+                }
+            }
+            lazy = null;
+        }
+    }
+
+    private void addNodes(List<UniversityStudent> students) {
         adjacencyList = new HashMap<>();
         studentMap = new HashMap<>();
+        bySeq = new ArrayList<>(students);
+        seqOf = new HashMap<>();
 
-        for (UniversityStudent student : students) {
+        for (int i = 0; i < students.size(); i++) {
+            UniversityStudent student = students.get(i);
             adjacencyList.put(student, new ArrayList<>());
             studentMap.put(student.getName(), student);
+            seqOf.put(student.getName(), i);
         }
+    }
 
+    // Scores every pair of students.
+    private void buildPairwise(List<UniversityStudent> students) {
         for (int i = 0; i < students.size(); i++) {
             for (int j = i + 1; j < students.size(); j++) {
                 UniversityStudent s1 = students.get(i);
                 UniversityStudent s2 = students.get(j);
 
-                int strength = s1.calculateConnectionStrength(s2);
+                int strength = scorer.score(s1, s2);
                 if (strength > 0) {
-                    addEdge(s1, s2, strength);
+                    appendEdge(s1, s2, strength);
                 }
             }
         }
     }
 
-    // Adds a weighted edge between two students (undirected).
-    public void addEdge(UniversityStudent s1, UniversityStudent s2, int weight) {
+    // Scores only the pairs that share a bucket in the candidate index.
+    // Candidates are visited in ascending order so edges are added in the same order as buildPairwise.
+    private void buildIndexed(List<UniversityStudent> students) {
+        CandidateIndex index = new CandidateIndex(students, scorer);
+        int[] mark = new int[students.size()];
+        IntList candidates = new IntList();
+
+        for (int i = 0; i < students.size(); i++) {
+            UniversityStudent s1 = students.get(i);
+            index.collect(i, s1, mark, candidates);
+
+            for (int k = 0; k < candidates.size(); k++) {
+                UniversityStudent s2 = students.get(candidates.get(k));
+
+                int strength = scorer.score(s1, s2);
+                if (strength > 0) {
+                    appendEdge(s1, s2, strength);
+                }
+            }
+        }
+    }
+
+    // Scores row ranges on the pool, each into its own edge buffer, then merges the buffers in row order.
+    // The merge runs on the calling thread, so the adjacency lists never need a lock and the
+    // edge order matches buildIndexed exactly.
+    private void buildParallel(List<UniversityStudent> students, ForkJoinPool pool) {
+        int n = students.size();
+        if (n == 0) return;
+
+        EdgeBuffer[] buffers = scanEdges(students, pool, scorer);
+
+        // Resolve every student's list once so the merge does no hashing.
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        List<Edge>[] lists = new List[n];
+        int[] degree = new int[n];
+        for (int i = 0; i < n; i++) {
+            lists[i] = adjacencyList.get(students.get(i));
+        }
+        for (EdgeBuffer buffer : buffers) {
+            for (int k = 0; k < buffer.size; k++) {
+                degree[buffer.source[k]]++;
+                degree[buffer.target[k]]++;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            ((ArrayList<Edge>) lists[i]).ensureCapacity(degree[i]);
+        }
+
+        for (EdgeBuffer buffer : buffers) {
+            for (int k = 0; k < buffer.size; k++) {
+                UniversityStudent s1 = students.get(buffer.source[k]);
+                UniversityStudent s2 = students.get(buffer.target[k]);
+                lists[buffer.source[k]].add(new Edge(s2, buffer.weight[k]));
+                lists[buffer.target[k]].add(new Edge(s1, buffer.weight[k]));
+            }
+        }
+    }
+
+    /**
+     * Scores the candidate pairs of every row on the pool.
+     * Each returned buffer holds the edges (i, j) with i &lt; j of one contiguous chunk of rows,
+     * in ascending (i, j) order, so reading the buffers in sequence replays the pairwise build.
+     *
+     * @param students The students to connect; a student's id is its position in the list.
+     * @param pool     The pool that scores the row ranges.
+     * @param scorer   The connection-strength rules.
+     * @return The edge buffers, one per chunk, in row order.
+     */
+    static EdgeBuffer[] scanEdges(List<UniversityStudent> students, ForkJoinPool pool, ConnectionScorer scorer) {
+        int n = students.size();
+        if (n == 0) return new EdgeBuffer[0];
+
+        CandidateIndex index = new CandidateIndex(students, scorer);
+        int grain = Math.max(64, n / (pool.getParallelism() * 8));
+        EdgeBuffer[] buffers = new EdgeBuffer[(n + grain - 1) / grain];
+        ThreadLocal<int[]> marks = ThreadLocal.withInitial(() -> new int[n]);
+
+        pool.invoke(new RowRangeTask(students, index, scorer, marks, buffers, grain, 0, buffers.length));
+        return buffers;
+    }
+
+    /**
+     * Edges found by one worker for a contiguous range of rows, in the order they were discovered.
+     */
+    static class EdgeBuffer {
+        int[] source = new int[64];
+        int[] target = new int[64];
+        int[] weight = new int[64];
+        int size;
+
+        void add(int s, int t, int w) {
+            if (size == source.length) {
+                source = Arrays.copyOf(source, size * 2);
+                target = Arrays.copyOf(target, size * 2);
+                weight = Arrays.copyOf(weight, size * 2);
+            }
+            source[size] = s;
+            target[size] = t;
+            weight[size] = w;
+            size++;
+        }
+    }
+
+    /**
+     * Fork/join task that scores the rows of a range of chunks, splitting until one chunk remains.
+     */
+    private static class RowRangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<UniversityStudent> students;
+        private final CandidateIndex index;
+        private final ConnectionScorer scorer;
+        private final ThreadLocal<int[]> marks;
+        private final EdgeBuffer[] buffers;
+        private final int grain;
+        private final int fromChunk;
+        private final int toChunk;
+
+        RowRangeTask(List<UniversityStudent> students, CandidateIndex index, ConnectionScorer scorer,
+                     ThreadLocal<int[]> marks, EdgeBuffer[] buffers, int grain, int fromChunk, int toChunk) {
+            this.students = students;
+            this.index = index;
+            this.scorer = scorer;
+            this.marks = marks;
+            this.buffers = buffers;
+            this.grain = grain;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (toChunk - fromChunk > 1) {
+                int mid = (fromChunk + toChunk) >>> 1;
+                invokeAll(new RowRangeTask(students, index, scorer, marks, buffers, grain, fromChunk, mid),
+                        new RowRangeTask(students, index, scorer, marks, buffers, grain, mid, toChunk));
+                return;
+            }
+
+            // Mark stamps are row ids, so a worker can reuse its scratch array across chunks.
+            int[] mark = marks.get();
+            IntList candidates = new IntList();
+            EdgeBuffer buffer = new EdgeBuffer();
+            int end = Math.min(students.size(), (fromChunk + 1) * grain);
+
+            for (int i = fromChunk * grain; i < end; i++) {
+                UniversityStudent s1 = students.get(i);
+                index.collect(i, s1, mark, candidates);
+
+                for (int k = 0; k < candidates.size(); k++) {
+                    int j = candidates.get(k);
+                    int strength = scorer.score(s1, students.get(j));
+                    if (strength > 0) buffer.add(i, j, strength);
+                }
+            }
+            buffers[fromChunk] = buffer;
+        }
+    }
+
+    // Appends an edge during a build, which visits pairs in sequence order and shares no lists.
+    private void appendEdge(UniversityStudent s1, UniversityStudent s2, int weight) {
         adjacencyList.get(s1).add(new Edge(s2, weight));
         adjacencyList.get(s2).add(new Edge(s1, weight));
     }
 
+    /**
+     * Adds a weighted edge between two students (undirected), inserting it into both adjacency
+     * lists at the position given by the other student's sequence number.
+     *
+     * @param s1     One student.
+     * @param s2     The other student.
+     * @param weight The weight of the edge.
+     * @throws IllegalArgumentException If either student is not in the graph, or both are the same.
+     */
+    public void addEdge(UniversityStudent s1, UniversityStudent s2, int weight) {
+        expand();
+        int seq1 = seqOfMember(s1);
+        int seq2 = seqOfMember(s2);
+        if (seq1 == seq2) {
+            throw new IllegalArgumentException("An edge needs two different students: " + s1.getName());
+        }
+        List<Edge> edges1 = writableEdges(s1);
+        edges1.add(edgePosition(edges1, seq2), new Edge(s2, weight));
+        List<Edge> edges2 = writableEdges(s2);
+        edges2.add(edgePosition(edges2, seq1), new Edge(s1, weight));
+        compact = null;
+    }
+
+    // Returns the sequence number of a student that must be in the graph.
+    private int seqOfMember(UniversityStudent student) {
+        Integer seq = seqOf.get(student.getName());
+        if (seq == null || bySeq.get(seq) != student) {
+            throw new IllegalArgumentException("Student not in graph: " + student.getName());
+        }
+        return seq;
+    }
+
+    // Returns the connection-strength rules this graph was built with.
+    public ConnectionScorer scorer() {
+        return scorer;
+    }
+
+    /**
+     * Adds a student and connects it to every existing student it has a positive strength with.
+     * Only the new student's candidates are scored.
+     *
+     * @param student The student to add.
+     * @throws IllegalArgumentException If a student with the same name is already in the graph.
+     */
+    public void addStudent(UniversityStudent student) {
+        expand();
+        if (studentMap.containsKey(student.getName())) {
+            throw new IllegalArgumentException("Student already in graph: " + student.getName());
+        }
+        CandidateIndex index = liveIndex();
+        int seq = bySeq.size();
+        bySeq.add(student);
+        seqOf.put(student.getName(), seq);
+        adjacencyList.put(student, new ArrayList<>());
+        studentMap.put(student.getName(), student);
+        index.insert(seq, student);
+        connect(seq, student);
+        compact = null;
+    }
+
+    /**
+     * Recomputes the edges of a student after its attributes or roommate changed.
+     * The student keeps its sequence number. If a different object with the same name is
+     * passed, it replaces the old one in the graph. Call this for every student whose
+     * roommate was set or cleared, so roommate weights stay current.
+     *
+     * @param student The changed student.
+     * @return true if the student was in the graph.
+     */
+    public boolean updateStudent(UniversityStudent student) {
+        expand();
+        Integer seq = seqOf.get(student.getName());
+        if (seq == null) return false;
+
+        CandidateIndex index = liveIndex();
+        UniversityStudent old = bySeq.get(seq);
+        disconnect(old, seq);
+        List<Edge> dropped = adjacencyList.remove(old);
+        if (sharedLists != null) sharedLists.remove(dropped);
+        index.remove(seq);
+
+        bySeq.set(seq, student);
+        adjacencyList.put(student, new ArrayList<>());
+        studentMap.put(student.getName(), student);
+        index.insert(seq, student);
+        connect(seq, student);
+        compact = null;
+        return true;
+    }
+
+    /**
+     * Removes a student and all of its edges.
+     *
+     * @param student The student to remove, matched by name.
+     * @return true if the student was in the graph.
+     */
+    public boolean removeStudent(UniversityStudent student) {
+        expand();
+        Integer seq = seqOf.get(student.getName());
+        if (seq == null) return false;
+
+        CandidateIndex index = liveIndex();
+        UniversityStudent old = bySeq.get(seq);
+        disconnect(old, seq);
+        List<Edge> dropped = adjacencyList.remove(old);
+        if (sharedLists != null) sharedLists.remove(dropped);
+        studentMap.remove(old.getName());
+        seqOf.remove(old.getName());
+        bySeq.set(seq, null);
+        index.remove(seq);
+        compact = null;
+        return true;
+    }
+
+    // Returns the index used by incremental updates, building it from the current students on first use.
+    private CandidateIndex liveIndex() {
+        if (liveIndex == null) {
+            liveIndex = new CandidateIndex(scorer);
+            for (int seq = 0; seq < bySeq.size(); seq++) {
+                if (bySeq.get(seq) != null) liveIndex.insert(seq, bySeq.get(seq));
+            }
+        }
+        return liveIndex;
+    }
+
+    // Scores a student against its candidates and inserts the edges at their ordered positions.
+    private void connect(int seq, UniversityStudent student) {
+        IntList candidates = new IntList();
+        liveIndex.collectAll(seq, student, candidates);
+        List<Edge> edges = adjacencyList.get(student);
+
+        for (int k = 0; k < candidates.size(); k++) {
+            int otherSeq = candidates.get(k);
+            UniversityStudent other = bySeq.get(otherSeq);
+            int strength = otherSeq < seq ? scorer.score(other, student) : scorer.score(student, other);
+            if (strength > 0) {
+                edges.add(new Edge(other, strength));
+                List<Edge> otherEdges = writableEdges(other);
+                otherEdges.add(edgePosition(otherEdges, seq), new Edge(student, strength));
+            }
+        }
+    }
+
+    // Removes the reverse edges that point at a student from each of its neighbours.
+    private void disconnect(UniversityStudent student, int seq) {
+        for (Edge edge : adjacencyList.get(student)) {
+            List<Edge> otherEdges = writableEdges(edge.neighbor);
+            int position = edgePosition(otherEdges, seq);
+            if (position == otherEdges.size() || otherEdges.get(position).neighbor != student) {
+                throw new IllegalStateException("No edge from " + edge.neighbor.getName() + " back to " + student.getName());
+            }
+            otherEdges.remove(position);
+        }
+    }
+
+    /**
+     * Returns a copy of this graph that shares its adjacency lists instead of duplicating them.
+     * A list is copied only when either graph first changes it, so a graph that readers are
+     * still using can serve as the base of the next version while staying untouched.
+     * The copy costs O(students); edges are copied only for the students that later change.
+     *
+     * @return A graph equal to this one.
+     */
+    public StudentGraph copy() {
+        // Nothing has been expanded or changed yet, so the copy can wrap the same compact form.
+        CompactStudentGraph source = lazy;
+        if (source != null) return new StudentGraph(source);
+
+        Set<List<Edge>> shared = Collections.newSetFromMap(new IdentityHashMap<>());
+        shared.addAll(adjacencyList.values());
+
+        StudentGraph copy = new StudentGraph(new ArrayList<>(), BuildMode.INDEXED, scorer);
+        copy.adjacencyList = new HashMap<>(adjacencyList);
+        copy.studentMap = new HashMap<>(studentMap);
+        copy.bySeq = new ArrayList<>(bySeq);
+        copy.seqOf = new HashMap<>(seqOf);
+        copy.compact = compact;
+        copy.sharedLists = shared;
+
+        Set<List<Edge>> mine = Collections.newSetFromMap(new IdentityHashMap<>());
+        mine.addAll(shared);
+        sharedLists = mine;
+        return copy;
+    }
+
+    // Returns a student's edge list for modification, first copying it if another graph shares it.
+    private List<Edge> writableEdges(UniversityStudent student) {
+        List<Edge> edges = adjacencyList.get(student);
+        if (sharedLists != null && sharedLists.remove(edges)) {
+            edges = new ArrayList<>(edges);
+            adjacencyList.put(student, edges);
+        }
+        return edges;
+    }
+
+    // Returns the position of the first edge whose neighbour has a sequence number of at least seq.
+    private int edgePosition(List<Edge> edges, int seq) {
+        int lo = 0;
+        int hi = edges.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (seqOf.get(edges.get(mid).neighbor.getName()) < seq) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Returns the compressed, dense-id form of this graph used by the search algorithms.
+     * It is built on first use and cached until the graph changes.
+     *
+     * @return The CompactStudentGraph for the current edges.
+     */
+    public CompactStudentGraph compact() {
+        CompactStudentGraph current = compact;
+        if (current == null) {
+            current = new CompactStudentGraph(this);
+            compact = current;
+        }
+        return current;
+    }
+
+    /**
+     * Returns the index of which students interned at which companies.
+     * It shares the dense ids of compact() and is rebuilt whenever that is.
+     *
+     * @return The CompanyIndex for the current graph.
+     */
+    public CompanyIndex companyIndex() {
+        return compact().companyIndex();
+    }
+
     /**
      * Retrieves the list of edges (neighbors) for a specific student.
      *
@@ -68,6 +582,8 @@ public class StudentGraph {
      * @return A list of Edge objects connecting the student to others.
      */
     public List<Edge> getNeighbors(UniversityStudent student) {
+        CompactStudentGraph source = lazy;
+        if (source != null) return source.getNeighbors(student);
         return adjacencyList.getOrDefault(student, new ArrayList<>());
     }
 
@@ -77,19 +593,49 @@ public class StudentGraph {
      * @return A list of all UniversityStudent objects in the graph.
      */
     public List<UniversityStudent> getAllNodes() {
+        CompactStudentGraph source = lazy;
+        if (source != null) return source.getAllNodes();
         return new ArrayList<>(adjacencyList.keySet());
     }
 
     // Returns a student by name.
     public UniversityStudent getStudent(String name) {
+        CompactStudentGraph source = lazy;
+        if (source != null) return source.getStudent(name);
         return studentMap.get(name);
     }
 
+    /**
+     * Checks whether another graph has exactly the same adjacency lists as this one,
+     * including the order of each student's edges.
+     *
+     * @param other The graph to compare against.
+     * @return true if both graphs hold the same nodes and identical edge lists.
+     */
+    public boolean hasSameAdjacency(StudentGraph other) {
+        expand();
+        other.expand();
+        if (!adjacencyList.keySet().equals(other.adjacencyList.keySet())) return false;
+
+        for (Map.Entry<UniversityStudent, List<Edge>> entry : adjacencyList.entrySet()) {
+            List<Edge> mine = entry.getValue();
+            List<Edge> theirs = other.adjacencyList.get(entry.getKey());
+            if (mine.size() != theirs.size()) return false;
+
+            for (int i = 0; i < mine.size(); i++) {
+                if (!mine.get(i).neighbor.equals(theirs.get(i).neighbor)) return false;
+                if (mine.get(i).weight != theirs.get(i).weight) return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Prints a visual representation of the graph to the console.
      * Useful for debugging and verification.
      */
     public void displayGraph() {
+        expand();
         System.out.println("Student Graph:");
         for (UniversityStudent student : adjacencyList.keySet()) {
             System.out.print(student.getName() + " -> [");
@@ -0,0 +1,65 @@
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks for operations that update two students together, such as a friend request
+ * or a chat message. Each student maps to one of a fixed set of locks by its name code, so
+ * operations on unrelated pairs run in parallel while two operations that share a student
+ * are serialized. Both locks of a pair are always taken in ascending stripe order, which
+ * rules out deadlock between threads locking the same two students in opposite roles.
+ */
+public final class StudentLocks {
+    private static final int STRIPES = 1024;
+    private static final ReentrantLock[] LOCKS = new ReentrantLock[STRIPES];
+
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            LOCKS[i] = new ReentrantLock();
+        }
+    }
+
+    private StudentLocks() {
+    }
+
+    // Returns the stripe a student's updates are guarded by.
+    static int stripe(UniversityStudent student) {
+        int code = student.getNameCode();
+        // Students without a name share stripe 0.
+        return code < 0 ? 0 : code & (STRIPES - 1);
+    }
+
+    /**
+     * Runs an action while holding the locks of both students.
+     *
+     * @param a      One student.
+     * @param b      The other student; may be the same as a.
+     * @param action The update to perform.
+     */
+    public static void withPair(UniversityStudent a, UniversityStudent b, Runnable action) {
+        withStripes(stripe(a), stripe(b), action);
+    }
+
+    // Runs an action while holding one stripe, for callers that kept a stripe rather than the student.
+    static void withStripe(int stripe, Runnable action) {
+        withStripes(stripe, stripe, action);
+    }
+
+    private static void withStripes(int first, int second, Runnable action) {
+        if (first > second) {
+            int swap = first;
+            first = second;
+            second = swap;
+        }
+
+        LOCKS[first].lock();
+        try {
+            if (second != first) LOCKS[second].lock();
+            try {
+                action.run();
+            } finally {
+                if (second != first) LOCKS[second].unlock();
+            }
+        } finally {
+            LOCKS[first].unlock();
+        }
+    }
+}
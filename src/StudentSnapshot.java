@@ -0,0 +1,268 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Versioned binary snapshot of a parsed cohort and its built graph, so a server can start
+ * without re-parsing text or rescoring pairs.
+ *
+ * Layout (big-endian):
+ * <ul>
+ * <li>header - magic "LHNS", format version, and the ConnectionScorer rules the weights
+ *     were scored with</li>
+ * <li>string table - every distinct name, gender, major and company, stored once</li>
+ * <li>student columns - string ids and values per student, roommate id or -1,
+ *     and offset-delimited roommate preference and internship lists</li>
+ * <li>graph - CSR offsets, neighbour ids and weights, in student order</li>
+ * </ul>
+ * Every student must have a distinct name; other missing strings are stored as id -1. Friends
+ * and chat history are runtime state and are not saved.
+ */
+public class StudentSnapshot {
+    private static final int MAGIC = 0x4C484E53;
+    public static final int VERSION = 2;
+
+    private final List<UniversityStudent> students;
+    private final StudentGraph graph;
+
+    private StudentSnapshot(List<UniversityStudent> students, StudentGraph graph) {
+        this.students = students;
+        this.graph = graph;
+    }
+
+    // Returns the students in the order they were saved, with roommates restored.
+    public List<UniversityStudent> getStudents() {
+        return students;
+    }
+
+    // Returns the graph, whose compact() form is the one read from the file.
+    public StudentGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Writes students and their graph to a snapshot file.
+     *
+     * @param file     The destination file.
+     * @param students The students, in the order they should be loaded back.
+     * @param graph    A graph built over exactly these students.
+     * @throws IOException If the file cannot be written.
+     * @throws IllegalArgumentException If a student has no name or two students share one.
+     */
+    public static void write(Path file, List<UniversityStudent> students, StudentGraph graph) throws IOException {
+        int n = students.size();
+        Map<String, Integer> ids = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            String name = students.get(i).getName();
+            // Students and edges are stored by name, so every student needs a distinct one.
+            if (name == null || ids.put(name, i) != null) {
+                throw new IllegalArgumentException("A snapshot needs a unique, non-null name for every student; got " + name + ".");
+            }
+        }
+
+        Map<String, Integer> stringIds = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            // Intern every string first so the table can be written ahead of the columns.
+            for (UniversityStudent s : students) {
+                intern(s.getName(), stringIds, strings);
+                intern(s.getGender(), stringIds, strings);
+                intern(s.getMajor(), stringIds, strings);
+                for (String pref : s.getRoommatePreferences()) intern(pref, stringIds, strings);
+                for (String company : s.getPreviousInternships()) intern(company, stringIds, strings);
+            }
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, graph.scorer().toString());
+            out.writeInt(strings.size());
+            for (String s : strings) {
+                writeString(out, s);
+            }
+
+            out.writeInt(n);
+            for (UniversityStudent s : students) out.writeInt(stringIds.get(s.getName()));
+            for (UniversityStudent s : students) out.writeInt(s.getAge());
+            for (UniversityStudent s : students) out.writeInt(stringId(s.getGender(), stringIds));
+            for (UniversityStudent s : students) out.writeInt(s.getYear());
+            for (UniversityStudent s : students) out.writeInt(stringId(s.getMajor(), stringIds));
+            for (UniversityStudent s : students) out.writeDouble(s.getGpa());
+            for (UniversityStudent s : students) {
+                Integer roommate = s.getRoommate() == null ? null : ids.get(s.getRoommate().getName());
+                out.writeInt(roommate == null ? -1 : roommate);
+            }
+            writeLists(out, students, stringIds, true);
+            writeLists(out, students, stringIds, false);
+
+            int offset = 0;
+            out.writeInt(offset);
+            for (UniversityStudent s : students) {
+                offset += graph.getNeighbors(s).size();
+                out.writeInt(offset);
+            }
+            for (UniversityStudent s : students) {
+                for (StudentGraph.Edge edge : graph.getNeighbors(s)) out.writeInt(ids.get(edge.neighbor.getName()));
+            }
+            for (UniversityStudent s : students) {
+                for (StudentGraph.Edge edge : graph.getNeighbors(s)) {
+                    if (edge.weight < 0 || edge.weight > 255) {
+                        throw new IllegalStateException("Connection strength " + edge.weight + " does not fit in a snapshot.");
+                    }
+                    out.writeByte(edge.weight);
+                }
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void intern(String s, Map<String, Integer> stringIds, List<String> strings) {
+        if (s != null && !stringIds.containsKey(s)) {
+            stringIds.put(s, strings.size());
+            strings.add(s);
+        }
+    }
+
+    private static int stringId(String s, Map<String, Integer> stringIds) {
+        return s == null ? -1 : stringIds.get(s);
+    }
+
+    // Writes either the roommate preferences or the internships of every student as offsets plus string ids.
+    private static void writeLists(DataOutputStream out, List<UniversityStudent> students, Map<String, Integer> stringIds, boolean preferences) throws IOException {
+        int offset = 0;
+        out.writeInt(offset);
+        for (UniversityStudent s : students) {
+            offset += (preferences ? s.getRoommatePreferences() : s.getPreviousInternships()).size();
+            out.writeInt(offset);
+        }
+        for (UniversityStudent s : students) {
+            for (String value : preferences ? s.getRoommatePreferences() : s.getPreviousInternships()) {
+                out.writeInt(stringId(value, stringIds));
+            }
+        }
+    }
+
+    /**
+     * Loads a snapshot written by write. The file is memory-mapped and the graph's CSR columns
+     * are read in place by a CompactStudentGraph; only the students are materialized. The
+     * returned StudentGraph serves reads from that compact form and builds Edge lists only if
+     * it is changed or a caller needs them all.
+     *
+     * @param file The snapshot file.
+     * @return The loaded students and graph.
+     * @throws IOException If the file cannot be read or is not a snapshot of this version.
+     */
+    public static StudentSnapshot load(Path file) throws IOException {
+        ByteBuffer in;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("Snapshot is larger than 2 GB: " + file);
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            in = mapped;
+        }
+
+        try {
+            if (in.getInt() != MAGIC) throw new IOException("Not a student snapshot: " + file);
+            int version = in.getInt();
+            if (version != VERSION) throw new IOException("Unsupported snapshot version " + version + " in " + file);
+            ConnectionScorer scorer = ConnectionScorer.parse(readString(in));
+
+            String[] strings = new String[in.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readString(in);
+            }
+
+            int n = in.getInt();
+            IntBuffer names = ints(in, n);
+            IntBuffer ages = ints(in, n);
+            IntBuffer genders = ints(in, n);
+            IntBuffer years = ints(in, n);
+            IntBuffer majors = ints(in, n);
+            DoubleBuffer gpas = slice(in, n * Double.BYTES).asDoubleBuffer();
+            IntBuffer roommates = ints(in, n);
+            IntBuffer prefOffsets = ints(in, n + 1);
+            IntBuffer prefs = ints(in, prefOffsets.get(n));
+            IntBuffer internshipOffsets = ints(in, n + 1);
+            IntBuffer internships = ints(in, internshipOffsets.get(n));
+
+            IntBuffer offsets = ints(in, n + 1);
+            IntBuffer neighbors = ints(in, offsets.get(n));
+            ByteBuffer weights = slice(in, offsets.get(n));
+
+            // Each loaded snapshot has its own dictionaries, released with its students.
+            StringDictionary.Scope scope = new StringDictionary.Scope();
+            List<UniversityStudent> students = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                students.add(new UniversityStudent(strings[names.get(i)], ages.get(i), string(strings, genders.get(i)), years.get(i),
+                        string(strings, majors.get(i)), gpas.get(i), strings(strings, prefs, prefOffsets.get(i), prefOffsets.get(i + 1)),
+                        strings(strings, internships, internshipOffsets.get(i), internshipOffsets.get(i + 1)), scope));
+            }
+            for (int i = 0; i < n; i++) {
+                if (roommates.get(i) >= 0) students.get(i).setRoommate(students.get(roommates.get(i)));
+            }
+
+            CompactStudentGraph compact = new CompactStudentGraph(students, offsets, neighbors, weights, scorer);
+            return new StudentSnapshot(students, new StudentGraph(compact));
+        } catch (java.nio.BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Truncated or corrupt snapshot: " + file, e);
+        }
+    }
+
+    // Returns a view of the next length bytes and advances past them.
+    private static ByteBuffer slice(ByteBuffer in, int length) {
+        if (length < 0 || length > in.remaining()) throw new java.nio.BufferUnderflowException();
+        ByteBuffer view = in.slice();
+        view.limit(length);
+        in.position(in.position() + length);
+        return view;
+    }
+
+    // Returns a view of the next count ints and advances past them.
+    private static IntBuffer ints(ByteBuffer in, int count) {
+        if (count < 0 || count > in.remaining() / Integer.BYTES) throw new java.nio.BufferUnderflowException();
+        return slice(in, count * Integer.BYTES).asIntBuffer();
+    }
+
+    private static String string(String[] strings, int id) {
+        return id < 0 ? null : strings[id];
+    }
+
+    private static List<String> strings(String[] strings, IntBuffer ids, int from, int to) {
+        List<String> values = new ArrayList<>(to - from);
+        for (int k = from; k < to; k++) {
+            values.add(string(strings, ids.get(k)));
+        }
+        return values;
+    }
+
+    /**
+     * Converts a text roster to a snapshot, assigning roommates first as ApiServer does.
+     * Usage: java StudentSnapshot &lt;roster.txt&gt; &lt;snapshot.bin&gt;
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: java StudentSnapshot <roster.txt> <snapshot.bin>");
+            return;
+        }
+        List<UniversityStudent> students = DataParser.parseStudentsParallel(args[0]);
+        GaleShapley.assignRoommates(students);
+        write(Paths.get(args[1]), students, new StudentGraph(students));
+        System.out.println("Wrote " + students.size() + " students to " + args[1]);
+    }
+}
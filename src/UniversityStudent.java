@@ -1,16 +1,36 @@
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Concrete implementation of the Student class representing a University Student.
  * Includes specific logic for calculating connection strengths based on university criteria.
+ * Names, genders, majors and companies are encoded through the dictionaries of the student's
+ * StringDictionary.Scope, so the string fields hold one canonical instance per value and
+ * connection strengths are computed on the int codes. Students of different scopes are
+ * compared by their strings instead.
  */
 public class UniversityStudent extends Student {
+    private static final AtomicInteger NEXT_CHAT_ID = new AtomicInteger();
+
+    private final StringDictionary.Scope scope;
+    private final int nameCode;
+    private final int genderCode;
+    private final int majorCode;
+    private int[] preferenceCodes;
+    private int[] internshipCodes;
+    private long internshipMask;
+    private boolean internshipMaskExact;
     private UniversityStudent roommate;
-    private List<String> friends;
-    private List<String> chatHistory;
+    private Set<String> friends;
+    private Queue<String> friendOrder;
+    private final int chatId;
 
     /**
-     * Constructs a new UniversityStudent with the specified attributes.
+     * Constructs a new UniversityStudent with the specified attributes, encoded in the shared scope.
+     * Strings in the shared scope are never released, so code that loads cohorts repeatedly should
+     * pass a scope of its own instead.
      *
      * @param name                The student's name.
      * @param age                 The student's age.
@@ -22,20 +42,154 @@ public class UniversityStudent extends Student {
      * @param internships         A list of companies where the student has interned.
      */
     public UniversityStudent(String name, int age, String gender, int year, String major, double gpa, List<String> roommatePreferences, List<String> internships) {
-        this.name = name;
+        this(name, age, gender, year, major, gpa, roommatePreferences, internships, StringDictionary.Scope.SHARED);
+    }
+
+    /**
+     * Constructs a new UniversityStudent whose strings are encoded in the given scope, normally
+     * the one shared by the rest of its cohort.
+     *
+     * @param name                The student's name.
+     * @param age                 The student's age.
+     * @param gender              The student's gender.
+     * @param year                The student's year in school (1=Freshman, etc).
+     * @param major               The student's major.
+     * @param gpa                 The student's GPA.
+     * @param roommatePreferences A list of names of preferred roommates.
+     * @param internships         A list of companies where the student has interned.
+     * @param scope               The dictionaries to encode with.
+     */
+    public UniversityStudent(String name, int age, String gender, int year, String major, double gpa, List<String> roommatePreferences, List<String> internships, StringDictionary.Scope scope) {
+        this(name, age, gender, year, major, gpa, roommatePreferences, internships, scope, NEXT_CHAT_ID.getAndIncrement());
+    }
+
+    private UniversityStudent(String name, int age, String gender, int year, String major, double gpa, List<String> roommatePreferences, List<String> internships, StringDictionary.Scope scope, int chatId) {
+        this.scope = scope;
+        this.nameCode = scope.names.encode(name);
+        this.genderCode = scope.genders.encode(gender);
+        this.majorCode = scope.majors.encode(major);
+        this.name = scope.names.decode(nameCode);
         this.age = age;
-        this.gender = gender;
+        this.gender = scope.genders.decode(genderCode);
         this.year = year;
-        this.major = major;
+        this.major = scope.majors.decode(majorCode);
         this.gpa = gpa;
-        this.roommatePreferences = new ArrayList<>(roommatePreferences);
-        if (internships != null) {
-            this.previousInternships = new ArrayList<>(internships);
-        } else this.previousInternships = new ArrayList<>();
+
+        EncodedList preferences = new EncodedList(scope.names, roommatePreferences);
+        this.roommatePreferences = preferences;
+        preferences.encoded();
+        EncodedList companies = new EncodedList(scope.companies, internships);
+        this.previousInternships = companies;
+        companies.encoded();
 
         this.roommate = null;
-        this.friends = new ArrayList<>();
-        this.chatHistory = new ArrayList<>();
+        this.friends = ConcurrentHashMap.newKeySet();
+        this.friendOrder = new ConcurrentLinkedQueue<>();
+        this.chatId = chatId;
+    }
+
+    /**
+     * Returns a copy of this student with new roommate preferences and no roommate. To the social
+     * features the copy is the same person: it shares this student's friends and chat history.
+     * Used to derive the next published version of a student without changing this one.
+     *
+     * @param roommatePreferences The new list of preferred roommates.
+     * @return The copy.
+     */
+    UniversityStudent withRoommatePreferences(List<String> roommatePreferences) {
+        UniversityStudent copy = new UniversityStudent(name, age, gender, year, major, gpa, roommatePreferences, previousInternships, scope, chatId);
+        copy.friends = friends;
+        copy.friendOrder = friendOrder;
+        return copy;
+    }
+
+    /**
+     * A roommate preference or internship list that stays in step with its codes. It can be
+     * edited like a plain list; every edit canonicalizes the value and re-encodes the list.
+     * Like an ArrayList, it must not be edited while other threads read the student.
+     */
+    private final class EncodedList extends AbstractList<String> implements RandomAccess {
+        private final StringDictionary dictionary;
+        private final List<String> values = new ArrayList<>();
+
+        EncodedList(StringDictionary dictionary, List<String> initial) {
+            this.dictionary = dictionary;
+            if (initial != null) {
+                for (String value : initial) values.add(dictionary.canonical(value));
+            }
+        }
+
+        @Override
+        public String get(int index) {
+            return values.get(index);
+        }
+
+        @Override
+        public int size() {
+            return values.size();
+        }
+
+        @Override
+        public String set(int index, String value) {
+            String old = values.set(index, dictionary.canonical(value));
+            encoded();
+            return old;
+        }
+
+        @Override
+        public void add(int index, String value) {
+            values.add(index, dictionary.canonical(value));
+            modCount++;
+            encoded();
+        }
+
+        @Override
+        public String remove(int index) {
+            String old = values.remove(index);
+            modCount++;
+            encoded();
+            return old;
+        }
+
+        // Recomputes the student's codes for this list.
+        void encoded() {
+            int[] codes = new int[values.size()];
+            for (int i = 0; i < codes.length; i++) {
+                codes[i] = dictionary.code(values.get(i));
+            }
+            if (dictionary == scope.names) {
+                preferenceCodes = codes;
+            } else {
+                encodeInternships(codes);
+            }
+        }
+    }
+
+    // Sorted codes for merge intersection, plus a one-word summary: bit (code & 63) of the mask
+    // is set for every company. The mask is exact when every code is in 0..63 and none repeats.
+    private void encodeInternships(int[] companies) {
+        Arrays.sort(companies);
+        long mask = 0;
+        boolean exact = true;
+        for (int i = 0; i < companies.length; i++) {
+            mask |= 1L << (companies[i] & 63);
+            if (companies[i] < 0 || companies[i] >= 64 || (i > 0 && companies[i] == companies[i - 1])) exact = false;
+        }
+        this.internshipCodes = companies;
+        this.internshipMask = mask;
+        this.internshipMaskExact = exact;
+    }
+
+    // Returns whether the other student has this student's name; names are never equal to a missing name.
+    boolean hasSameName(UniversityStudent o) {
+        if (scope == o.scope) return nameCode >= 0 && nameCode == o.nameCode;
+        return name != null && name.equals(o.name);
+    }
+
+    // Returns whether both students have the same, non-missing major.
+    boolean hasSameMajor(UniversityStudent o) {
+        if (scope == o.scope) return majorCode >= 0 && majorCode == o.majorCode;
+        return major != null && major.equals(o.major);
     }
 
     /**
@@ -47,46 +201,68 @@ public class UniversityStudent extends Student {
      * <li>Same Age: +1</li>
      * </ul>
      *
+     * These are the ConnectionScorer.DEFAULT rules, which do the scoring.
+     *
      * @param other The student to compare against.
      * @return The total connection strength score.
      */
     @Override
     public int calculateConnectionStrength(Student other) {
-        int strength = 0;
-
-        if ((other instanceof UniversityStudent)) {
-            UniversityStudent o = (UniversityStudent) other;
+        if (!(other instanceof UniversityStudent)) return 0;
+        return ConnectionScorer.DEFAULT.score(this, (UniversityStudent) other);
+    }
 
-            if (this.roommate != null && this.roommate.equals(o)) strength += 4;
-            
-            for (String internship : this.previousInternships) {
-                if (o.previousInternships.contains(internship)) {
-                    strength += 3;
-                }
+    /**
+     * Counts this student's internships that the other student also has. A company listed twice
+     * here counts twice, and one listed twice by the other student counts once, as with List.contains.
+     *
+     * @param o The other student.
+     * @return The number of shared internships.
+     */
+    int sharedInternships(UniversityStudent o) {
+        if (scope != o.scope) {
+            int shared = 0;
+            for (String company : previousInternships) {
+                if (o.previousInternships.contains(company)) shared++;
             }
+            return shared;
+        }
+        long common = internshipMask & o.internshipMask;
+        if (common == 0) return 0;
+        if (internshipMaskExact && o.internshipMaskExact) return Long.bitCount(common);
 
-            if (this.major != null && this.major.equals(o.major)) strength += 2;
-            if (this.age == o.age) strength += 1;
-            
+        int[] mine = internshipCodes;
+        int[] theirs = o.internshipCodes;
+        int shared = 0;
+        int j = 0;
+        for (int i = 0; i < mine.length && j < theirs.length; ) {
+            if (mine[i] < theirs[j]) {
+                i++;
+            } else if (mine[i] > theirs[j]) {
+                j++;
+            } else {
+                // Only advance our side, so repeated entries here match the same company again.
+                shared++;
+                i++;
+            }
         }
-        
-        return strength;
+        return shared;
     }
 
     public String getName() { 
-        return name; 
+        return scope.names.decode(nameCode); 
     }
     public int getAge() { 
         return age; 
     }
     public String getGender() { 
-        return gender; 
+        return scope.genders.decode(genderCode); 
     }
     public int getYear() { 
         return year; 
     }
     public String getMajor() { 
-        return major; 
+        return scope.majors.decode(majorCode); 
     }
     public double getGpa() { 
         return gpa; 
@@ -99,6 +275,17 @@ public class UniversityStudent extends Student {
         return previousInternships; 
     }
 
+    // The dictionaries this student's codes come from; codes of students in different scopes are unrelated.
+    public StringDictionary.Scope getScope() { return scope; }
+
+    // Dictionary codes, for comparisons that should not touch strings. The arrays must not be modified.
+    public int getNameCode() { return nameCode; }
+    public int getGenderCode() { return genderCode; }
+    public int getMajorCode() { return majorCode; }
+    public int[] getRoommatePreferenceCodes() { return preferenceCodes; }
+    // Company codes sorted ascending, with repeated internships kept.
+    public int[] getInternshipCodes() { return internshipCodes; }
+
     /**
      * Returns the currently assigned roommate.
      * @return The UniversityStudent object representing the roommate, or null if none.
@@ -106,11 +293,31 @@ public class UniversityStudent extends Student {
     public UniversityStudent getRoommate() { return roommate; }
     public void setRoommate(UniversityStudent roommate) { this.roommate = roommate; }
 
-    public List<String> getFriends() { return friends; }
-    public void addFriend(String friendName) { if (!friends.contains(friendName)) friends.add(friendName); }
+    /**
+     * Returns a copy of the friend list, in the order friends were added. Changing the copy does
+     * not change the student's friends; use addFriend. Friends are kept in a concurrent set and
+     * a lock-free queue of the order they were added, so membership checks and additions are
+     * safe from any thread and adding a friend copies nothing.
+     * @return The names of the student's friends.
+     */
+    public List<String> getFriends() { return new ArrayList<>(friendOrder); }
+    public boolean hasFriend(String friendName) { return friends.contains(friendName); }
+    public boolean addFriend(String friendName) {
+        if (!friends.add(friendName)) return false;
+        friendOrder.add(friendName);
+        return true;
+    }
 
-    public List<String> getChatHistory() { return chatHistory; }
-    public void addChatMessage(String message) { chatHistory.add(message); }
+    /**
+     * Chat history lives in the shared ChatLog, indexed by a per-object id, so students with the
+     * same name from different test cases never see each other's messages.
+     * @return The retained messages this student sent or received, oldest first.
+     */
+    public List<String> getChatHistory() { return ChatLog.shared().read(this, 0, Integer.MAX_VALUE); }
+    public List<String> getChatHistory(int offset, int limit) { return ChatLog.shared().read(this, offset, limit); }
+    public int getChatCount() { return ChatLog.shared().count(this); }
+    public void addChatMessage(String message) { ChatLog.shared().append(this, this, message); }
+    int getChatId() { return chatId; }
 
     /**
      * Returns a string representation of the student.
@@ -126,7 +333,7 @@ public class UniversityStudent extends Student {
         if (this == obj) return true;
         if (obj == null || getClass() != obj.getClass()) return false;
         UniversityStudent other = (UniversityStudent) obj;
-        return name != null && name.equals(other.name);
+        return hasSameName(other);
     }
 
     @Override